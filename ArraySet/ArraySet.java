@@ -3,11 +3,20 @@ package ru.ifmo.ctddev.kustareva.arrayset;
 import java.util.*;
 
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // elements of the whole set in ascending order, views are [from, to) windows of it
     private final List<T> list;
-    private Comparator<? super T> comparator;
+    private final Comparator<? super T> comparator;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+    // optional Eytzinger (BFS) ordered copy of list and positions of its elements in list
+    private final Object[] layout;
+    private final int[] ranks;
 
     public ArraySet() {
-        list = Collections.emptyList();
+        this(Collections.emptyList(), null, false);
     }
 
     public ArraySet(Collection<? extends T>  collection) {
@@ -15,54 +24,194 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     public ArraySet(Collection<? extends T>  collection, Comparator<? super T> comparator) {
-        this.comparator = comparator;
-        list = new ArrayList<>();
-        TreeSet<T> tmp = new TreeSet<>(comparator);
-        tmp.addAll(collection);
-        list.addAll(tmp);
+        this(sortedUnique(collection, comparator), comparator, false);
+    }
+
+    public static <T> ArraySet<T> fromSorted(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        Object[] array = collection.toArray();
+        if (!isSorted(array, comparator)) {
+            throw new IllegalArgumentException("Collection is not sorted");
+        }
+        return new ArraySet<>(unique(array, comparator), comparator, false);
     }
 
-    private ArraySet(List<T> list, Comparator<? super T> comparator, boolean alreadySorted) {
+    // list must be sorted and contain no duplicates, all fields are final so sets are safe to share
+    private ArraySet(List<T> list, Comparator<? super T> comparator, boolean readOptimized) {
         this.list = list;
         this.comparator = comparator;
+        this.from = 0;
+        this.to = list.size();
+        this.descending = false;
+        if (readOptimized) {
+            this.layout = new Object[list.size() + 1];
+            this.ranks = new int[list.size() + 1];
+            fillLayout(0, 1);
+        } else {
+            this.layout = null;
+            this.ranks = null;
+        }
+    }
+
+    private ArraySet(ArraySet<T> set, int from, int to, boolean descending) {
+        this.list = set.list;
+        this.comparator = set.comparator;
+        this.layout = set.layout;
+        this.ranks = set.ranks;
+        this.from = from;
+        this.to = Math.max(from, to);
+        this.descending = descending;
+    }
+
+    public static <T> ArraySet<T> readOptimized(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        return new ArraySet<>(sortedUnique(collection, comparator), comparator, true);
+    }
+
+    private int fillLayout(int i, int k) {
+        if (k < layout.length) {
+            i = fillLayout(i, 2 * k);
+            layout[k] = list.get(i);
+            ranks[k] = i++;
+            i = fillLayout(i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> naturalIfNull(Comparator<?> comparator) {
+        return (Comparator<Object>) (comparator == null ? Comparator.naturalOrder() : comparator);
+    }
+
+    private static boolean isSorted(Object[] array, Comparator<?> comparator) {
+        Comparator<Object> cmp = naturalIfNull(comparator);
+        for (int i = 1; i < array.length; i++) {
+            if (cmp.compare(array[i - 1], array[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> List<T> sortedUnique(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        Object[] array = collection.toArray();
+        if (!isSorted(array, comparator)) {
+            if (array.length >= PARALLEL_THRESHOLD) {
+                Arrays.parallelSort(array, naturalIfNull(comparator));
+            } else {
+                Arrays.sort(array, naturalIfNull(comparator));
+            }
+        }
+        return unique(array, comparator);
+    }
+
+    // keeps the first of equal elements, like TreeSet.addAll does
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> unique(Object[] array, Comparator<?> comparator) {
+        Comparator<Object> cmp = naturalIfNull(comparator);
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (size == 0 || cmp.compare(array[size - 1], array[i]) != 0) {
+                array[size++] = array[i];
+            }
+        }
+        return (List<T>) Arrays.asList(size == array.length ? array : Arrays.copyOf(array, size));
+    }
+
+    static <T> ArraySet<T> ofSorted(List<T> list, Comparator<? super T> comparator) {
+        return new ArraySet<>(list, comparator, false);
     }
 
     private T getElement(int i) {
-        if (i >= 0 && i < size()) {
+        if (i >= from && i < to) {
             return list.get(i);
         }
         return null;
     }
 
-    private int checkResult(int i, boolean strict) {
-        if (i >= 0) {
-            return strict ? i - 1 : i;
+    // element at position i in iteration order
+    private T element(int i) {
+        return list.get(descending ? to - 1 - i : from + i);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object a, T b) {
+        return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare((T) a, b);
+    }
+
+    // compare in iteration order
+    private int compareInOrder(Object a, T b) {
+        return descending ? -compare(a, b) : compare(a, b);
+    }
+
+    // binary search result for t in list[from..to), indices are absolute
+    private int search(T t) {
+        if (layout == null) {
+            int lo = from;
+            int hi = to - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = compare(list.get(mid), t);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -lo - 1;
+        }
+        int n = layout.length - 1;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (compare(layout[k], t) < 0 ? 1 : 0);
         }
-        return (-i - 2);
+        // drop the trailing right turns: k becomes the first element not less than t
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        int i = k == 0 ? n : ranks[k];
+        if (k != 0 && i >= from && i < to && compare(layout[k], t) == 0) {
+            return i;
+        }
+        return -Math.min(Math.max(i, from), to) - 1;
+    }
+
+    // first index of an element >= t (> t if not inclusive)
+    private int start(T t, boolean inclusive) {
+        int i = search(t);
+        return i >= 0 ? (inclusive ? i : i + 1) : -i - 1;
+    }
+
+    // index after the last element <= t (< t if not inclusive)
+    private int end(T t, boolean inclusive) {
+        int i = search(t);
+        return i >= 0 ? (inclusive ? i + 1 : i) : -i - 1;
+    }
+
+    private T below(T t, boolean inclusive) {
+        return getElement(end(t, inclusive) - 1);
+    }
+
+    private T above(T t, boolean inclusive) {
+        return getElement(start(t, inclusive));
     }
 
     @Override
     public T lower(T t) {
-        int i = checkResult(Collections.binarySearch(list, t, comparator), true);
-        return getElement(i);
+        return descending ? above(t, false) : below(t, false);
     }
 
     @Override
     public T floor(T t) {
-        int i = checkResult(Collections.binarySearch(list, t, comparator), false);
-        return getElement(i);
+        return descending ? above(t, true) : below(t, true);
     }
 
     @Override
     public T ceiling(T t) {
-        int i = checkResult(Collections.binarySearch(list, t, comparator), true);
-        return getElement(i + 1);
+        return descending ? below(t, true) : above(t, true);
     }
 
     @Override
     public T higher(T t) {
-        int i = checkResult(Collections.binarySearch(list, t, comparator), false);
-        return getElement(i + 1);
+        return descending ? below(t, false) : above(t, false);
     }
 
     @Override
@@ -75,46 +224,69 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         throw new UnsupportedOperationException("pollLast()");
     }
 
+    private Iterator<T> iterator(boolean reversed) {
+        return new Iterator<T>() {
+            private int i = reversed ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return i >= from && i < to;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T element = list.get(i);
+                i += reversed ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
     @Override
     public Iterator<T> iterator() {
-        return Collections.unmodifiableList(list).iterator();
+        return iterator(descending);
     }
 
     @Override
     public NavigableSet<T> descendingSet() {
-        return new ArraySet<>(list, Collections.reverseOrder(comparator));
+        return new ArraySet<>(this, from, to, !descending);
     }
 
     @Override
     public Iterator<T> descendingIterator() {
-        return descendingSet().iterator();
+        return iterator(!descending);
     }
 
     @Override
     public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
-        int inFrom = checkResult(Collections.binarySearch(list, fromElement, comparator), fromInclusive) + 1;
-        int inTo = checkResult(Collections.binarySearch(list, toElement, comparator), !toInclusive);
-        if (inFrom > inTo) {
-            return new ArraySet<>();
+        if (descending) {
+            return new ArraySet<>(this, start(toElement, toInclusive), end(fromElement, fromInclusive), true);
         }
-        return new ArraySet<>(list.subList(inFrom, inTo + 1), comparator, true);
+        return new ArraySet<>(this, start(fromElement, fromInclusive), end(toElement, toInclusive), false);
     }
 
     @Override
     public NavigableSet<T> headSet(T toElement, boolean inclusive) {
-        int inTo = checkResult(Collections.binarySearch(list, toElement, comparator), !inclusive);
-        return new ArraySet<>(list.subList(0, inTo + 1), comparator, true);
+        if (descending) {
+            return new ArraySet<>(this, start(toElement, inclusive), to, true);
+        }
+        return new ArraySet<>(this, from, end(toElement, inclusive), false);
     }
 
     @Override
     public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
-        int inFrom = checkResult(Collections.binarySearch(list, fromElement, comparator), inclusive) + 1;
-        return new ArraySet<>(list.subList(inFrom, size()), comparator, true);
+        if (descending) {
+            return new ArraySet<>(this, from, end(fromElement, inclusive), true);
+        }
+        return new ArraySet<>(this, start(fromElement, inclusive), to, false);
     }
 
     @Override
     public Comparator<? super T> comparator() {
-        return comparator;
+        return descending ? Collections.reverseOrder(comparator) : comparator;
     }
 
     @Override
@@ -137,7 +309,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (size() == 0) {
             throw new NoSuchElementException("first()");
         }
-        return getElement(0);
+        return element(0);
     }
 
     @Override
@@ -145,18 +317,133 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (size() == 0) {
             throw new NoSuchElementException("last()");
         }
-        return getElement(size() - 1);
+        return element(size() - 1);
     }
 
     @Override
     public int size() {
-        return list.size();
+        return to - from;
     }
 
     @Override
     public boolean contains(Object o) {
         @SuppressWarnings("unchecked")
-        int check = Collections.binarySearch(list, (T) o, comparator);
+        int check = search((T) o);
         return (check >= 0);
     }
+
+    public int rank(T t) {
+        return descending ? to - end(t, true) : start(t, true) - from;
+    }
+
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return element(index);
+    }
+
+    public int countInRange(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (descending) {
+            return Math.max(0, end(fromElement, fromInclusive) - start(toElement, toInclusive));
+        }
+        return Math.max(0, end(toElement, toInclusive) - start(fromElement, fromInclusive));
+    }
+
+    // binary search result for t among positions [from..size) in iteration order,
+    // probing from, from + 1, from + 2, from + 4, ... first
+    private int gallop(int from, T t) {
+        int step = 1;
+        int lo = from;
+        int hi = from;
+        while (hi < size() && compareInOrder(element(hi), t) < 0) {
+            lo = hi + 1;
+            hi = from + step;
+            step *= 2;
+        }
+        hi = Math.min(hi, size() - 1);
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareInOrder(element(mid), t);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    public boolean containsAllSorted(Iterable<? extends T> sorted) {
+        int from = 0;
+        for (T t : sorted) {
+            int i = gallop(from, t);
+            if (i < 0) {
+                return false;
+            }
+            from = i;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof SortedSet && Objects.equals(((SortedSet<?>) c).comparator(), comparator())) {
+            return containsAllSorted((SortedSet<T>) c);
+        }
+        return super.containsAll(c);
+    }
+
+    private void checkComparator(ArraySet<T> other) {
+        if (!Objects.equals(comparator(), other.comparator())) {
+            throw new IllegalArgumentException("Sets have different comparators");
+        }
+    }
+
+    public ArraySet<T> intersection(ArraySet<T> other) {
+        checkComparator(other);
+        ArraySet<T> small = size() <= other.size() ? this : other;
+        ArraySet<T> large = small == this ? other : this;
+        List<T> result = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < small.size(); i++) {
+            T t = small.element(i);
+            int j = large.gallop(from, t);
+            if (j >= 0) {
+                result.add(t);
+                from = j + 1;
+            } else {
+                from = -j - 1;
+            }
+        }
+        return new ArraySet<>(result, comparator(), false);
+    }
+
+    public ArraySet<T> union(ArraySet<T> other) {
+        checkComparator(other);
+        List<T> result = new ArrayList<>(size() + other.size());
+        int i = 0;
+        int j = 0;
+        while (i < size() && j < other.size()) {
+            int cmp = compareInOrder(element(i), other.element(j));
+            if (cmp <= 0) {
+                result.add(element(i++));
+                if (cmp == 0) {
+                    j++;
+                }
+            } else {
+                result.add(other.element(j++));
+            }
+        }
+        while (i < size()) {
+            result.add(element(i++));
+        }
+        while (j < other.size()) {
+            result.add(other.element(j++));
+        }
+        return new ArraySet<>(result, comparator(), false);
+    }
 }
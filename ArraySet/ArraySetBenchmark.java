@@ -0,0 +1,154 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Rough comparison of {@link ArraySet} with {@link TreeSet} and the other sets of this package.
+ *
+ * <p>Usage: {@code ArraySetBenchmark [size...]}, default sizes are 1K, 100K and 10M.
+ * Every operation is warmed up and then timed over several rounds, the best round is printed
+ * in nanoseconds per operation. Memory is the heap retained per element by the set itself,
+ * measured over many copies of small sets; run with a fixed heap ({@code -Xms = -Xmx}) and
+ * {@code -XX:+UseSerialGC} for stable numbers.
+ */
+public class ArraySetBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int QUERIES = 1 << 20;
+    private static final int MEMORY_ELEMENTS = 1 << 22;
+
+    private static final Comparator<Integer> CUSTOM = (a, b) -> Integer.compare(a, b);
+
+    // keeps results alive so the JIT can not drop the measured work
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {1_000, 100_000, 10_000_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        System.out.printf("%-22s %10s %12s %12s %12s %12s %12s %10s%n",
+                "set", "size", "build ns/el", "contains", "floor", "ceiling", "iterate/el", "bytes/el");
+        for (int size : sizes) {
+            Random random = new Random(size);
+            List<Integer> elements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                elements.add(random.nextInt() & Integer.MAX_VALUE);
+            }
+            int[] queries = new int[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = random.nextInt() & Integer.MAX_VALUE;
+            }
+            run("TreeSet", size, elements, queries, c -> {
+                TreeSet<Integer> set = new TreeSet<>();
+                set.addAll(c);
+                return set;
+            });
+            run("TreeSet custom", size, elements, queries, c -> {
+                TreeSet<Integer> set = new TreeSet<>(CUSTOM);
+                set.addAll(c);
+                return set;
+            });
+            run("ArraySet", size, elements, queries, ArraySet::new);
+            run("ArraySet custom", size, elements, queries, c -> new ArraySet<>(c, CUSTOM));
+            run("ArraySet eytzinger", size, elements, queries, c -> ArraySet.readOptimized(c, null));
+            run("IntArraySet boxed", size, elements, queries,
+                    c -> new IntArraySet(c.stream().mapToInt(Integer::intValue).toArray()).boxed());
+            runViews(size, elements);
+        }
+    }
+
+    private static void run(String name, int size, List<Integer> elements, int[] queries,
+                            Function<List<Integer>, NavigableSet<Integer>> factory) {
+        NavigableSet<Integer> set = factory.apply(elements);
+        double bytes = retainedBytes(elements, factory) / size;
+        double build = best(() -> factory.apply(elements).size()) / size;
+        double contains = best(() -> {
+            long found = 0;
+            for (int q : queries) {
+                found += set.contains(q) ? 1 : 0;
+            }
+            return found;
+        }) / queries.length;
+        double floor = best(() -> sum(queries, set::floor)) / queries.length;
+        double ceiling = best(() -> sum(queries, set::ceiling)) / queries.length;
+        double iterate = best(() -> {
+            long total = 0;
+            for (int v : set) {
+                total += v;
+            }
+            return total;
+        }) / size;
+        System.out.printf("%-22s %10d %12.1f %12.1f %12.1f %12.1f %12.2f %10.1f%n",
+                name, size, build, contains, floor, ceiling, iterate, bytes);
+    }
+
+    private static void runViews(int size, List<Integer> elements) {
+        NavigableSet<Integer> tree = new TreeSet<>(elements);
+        NavigableSet<Integer> array = new ArraySet<>(elements);
+        for (NavigableSet<Integer> set : Arrays.asList(tree, array)) {
+            int low = set.first();
+            int high = set.last();
+            double views = best(() -> {
+                long total = 0;
+                NavigableSet<Integer> view = set;
+                for (int i = 0; i < QUERIES; i++) {
+                    // chained views narrowing towards the middle, then start over
+                    if (i % 16 == 0) {
+                        view = set;
+                    }
+                    view = view.subSet(low + (i % 16), true, high - (i % 16), true);
+                    total += view.descendingSet().isEmpty() ? 0 : 1;
+                }
+                return total;
+            }) / QUERIES;
+            System.out.printf("%-22s %10d %12s subSet+descendingSet %.1f ns%n",
+                    set.getClass().getSimpleName() + " views", size, "", views);
+        }
+    }
+
+    private static long sum(int[] queries, Function<Integer, Integer> f) {
+        long total = 0;
+        for (int q : queries) {
+            Integer v = f.apply(q);
+            total += v == null ? 0 : v;
+        }
+        return total;
+    }
+
+    // best time in nanoseconds over the rounds, after the same number of warm up rounds
+    private static double best(LongSupplier body) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 2 * ROUNDS; round++) {
+            long start = System.nanoTime();
+            sink += body.getAsLong();
+            long time = System.nanoTime() - start;
+            if (round >= ROUNDS) {
+                best = Math.min(best, time);
+            }
+        }
+        return best;
+    }
+
+    // heap retained by one set: the heap freed by dropping enough copies to rise above the GC noise;
+    // elements are shared between copies, so only the structure of the set is counted
+    private static double retainedBytes(List<Integer> elements, Function<List<Integer>, NavigableSet<Integer>> factory) {
+        int copies = Math.max(1, MEMORY_ELEMENTS / elements.size());
+        List<NavigableSet<Integer>> sets = new ArrayList<>(copies);
+        for (int i = 0; i < copies; i++) {
+            sets.add(factory.apply(elements));
+        }
+        long with = usedMemory();
+        sink += sets.get(copies - 1).size();
+        sets.clear();
+        long without = usedMemory();
+        return (double) (with - without) / copies;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
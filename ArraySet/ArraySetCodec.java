@@ -0,0 +1,242 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of naturally ordered {@link ArraySet}s.
+ *
+ * <p>Stream layout: {@code [int MAGIC][byte kind][int count][int length]}
+ * followed by {@code length} bytes of payload. Numbers are stored as the
+ * zigzag varint of the first element followed by unsigned varint gaps
+ * between neighbours, strings as the number of chars shared with the
+ * previous string followed by the UTF-8 bytes of the rest. The payload is
+ * read with a single {@code readFully} and decoded straight into the backing
+ * array, elements are known to be sorted and unique so nothing is re-sorted.
+ */
+public abstract class ArraySetCodec<T> {
+    private static final int MAGIC = 0x41534331;
+
+    private final byte kind;
+
+    private ArraySetCodec(int kind) {
+        this.kind = (byte) kind;
+    }
+
+    abstract void encode(ArraySet<T> set, Buffer out);
+
+    abstract ArraySet<T> decode(Cursor in, int count) throws IOException;
+
+    /**
+     * Writes the set to the stream, the stream is not closed.
+     *
+     * @throws IllegalArgumentException if the set is not in natural order
+     */
+    public void write(OutputStream out, ArraySet<T> set) throws IOException {
+        if (set.comparator() != null) {
+            throw new IllegalArgumentException("Only naturally ordered sets can be encoded");
+        }
+        Buffer buffer = new Buffer(Math.max(16, set.size() * 2));
+        encode(set, buffer);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(kind);
+        data.writeInt(set.size());
+        data.writeInt(buffer.size);
+        data.write(buffer.bytes, 0, buffer.size);
+        data.flush();
+    }
+
+    /**
+     * Reads a set written by {@link #write} with the same codec, the stream is not closed.
+     */
+    public ArraySet<T> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an encoded set");
+        }
+        int kind = data.readByte();
+        if (kind != this.kind) {
+            throw new IOException("Set of kind " + kind + " can not be read with codec of kind " + this.kind);
+        }
+        int count = data.readInt();
+        int length = data.readInt();
+        if (count < 0 || length < 0) {
+            throw new IOException("Corrupted set header");
+        }
+        byte[] payload = new byte[length];
+        data.readFully(payload);
+        Cursor cursor = new Cursor(payload);
+        ArraySet<T> set = decode(cursor, count);
+        if (cursor.position != length) {
+            throw new IOException("Corrupted set: " + (length - cursor.position) + " bytes left");
+        }
+        return set;
+    }
+
+    public static final ArraySetCodec<Integer> INT = new ArraySetCodec<Integer>(1) {
+        @Override
+        void encode(ArraySet<Integer> set, Buffer out) {
+            int previous = 0;
+            boolean first = true;
+            for (int v : set) {
+                if (first) {
+                    out.putVarLong((v << 1 ^ v >> 31) & 0xFFFFFFFFL);
+                    first = false;
+                } else {
+                    out.putVarLong((v - previous) & 0xFFFFFFFFL);
+                }
+                previous = v;
+            }
+        }
+
+        @Override
+        ArraySet<Integer> decode(Cursor in, int count) throws IOException {
+            int[] array = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (i == 0) {
+                    int v = (int) in.getVarLong();
+                    array[i] = v >>> 1 ^ -(v & 1);
+                } else {
+                    long gap = in.getVarLong();
+                    if (gap <= 0 || gap > (long) Integer.MAX_VALUE - array[i - 1]) {
+                        throw new IOException("Corrupted set: elements are not increasing");
+                    }
+                    array[i] = (int) (array[i - 1] + gap);
+                }
+            }
+            return IntArraySet.ofSorted(array).boxed();
+        }
+    };
+
+    public static final ArraySetCodec<Long> LONG = new ArraySetCodec<Long>(2) {
+        @Override
+        void encode(ArraySet<Long> set, Buffer out) {
+            long previous = 0;
+            boolean first = true;
+            for (long v : set) {
+                // the gap between increasing longs fits into 64 unsigned bits
+                out.putVarLong(first ? v << 1 ^ v >> 63 : v - previous);
+                first = false;
+                previous = v;
+            }
+        }
+
+        @Override
+        ArraySet<Long> decode(Cursor in, int count) throws IOException {
+            long[] array = new long[count];
+            for (int i = 0; i < count; i++) {
+                long v = in.getVarLong();
+                if (i == 0) {
+                    array[i] = v >>> 1 ^ -(v & 1);
+                } else {
+                    array[i] = array[i - 1] + v;
+                    if (v == 0 || Long.compareUnsigned(v, Long.MAX_VALUE - array[i - 1]) > 0) {
+                        throw new IOException("Corrupted set: elements are not increasing");
+                    }
+                }
+            }
+            return LongArraySet.ofSorted(array).boxed();
+        }
+    };
+
+    public static final ArraySetCodec<String> STRING = new ArraySetCodec<String>(3) {
+        @Override
+        void encode(ArraySet<String> set, Buffer out) {
+            String previous = "";
+            for (String s : set) {
+                int shared = 0;
+                int max = Math.min(previous.length(), s.length());
+                while (shared < max && previous.charAt(shared) == s.charAt(shared)) {
+                    shared++;
+                }
+                // do not split a surrogate pair, the rest must be valid UTF-16 on its own
+                if (shared > 0 && Character.isHighSurrogate(s.charAt(shared - 1))) {
+                    shared--;
+                }
+                byte[] rest = s.substring(shared).getBytes(StandardCharsets.UTF_8);
+                out.putVarLong(shared);
+                out.putVarLong(rest.length);
+                out.put(rest);
+                previous = s;
+            }
+        }
+
+        @Override
+        ArraySet<String> decode(Cursor in, int count) throws IOException {
+            String[] array = new String[count];
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                long shared = in.getVarLong();
+                long length = in.getVarLong();
+                if (shared > previous.length() || length > in.remaining()) {
+                    throw new IOException("Corrupted set: bad string at " + i);
+                }
+                String rest = new String(in.bytes, in.position, (int) length, StandardCharsets.UTF_8);
+                in.position += length;
+                array[i] = previous.substring(0, (int) shared).concat(rest);
+                previous = array[i];
+            }
+            return ArraySet.ofSorted(Arrays.asList(array), null);
+        }
+    };
+
+    static final class Buffer {
+        private byte[] bytes;
+        private int size;
+
+        Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (bytes.length - size < extra) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (v & 0x7F | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+    }
+
+    static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+
+        Cursor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int remaining() {
+            return bytes.length - position;
+        }
+
+        long getVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == bytes.length) {
+                    throw new EOFException("Corrupted set: truncated varint");
+                }
+                byte b = bytes[position++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Corrupted set: varint is too long");
+        }
+    }
+}
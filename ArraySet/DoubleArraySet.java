@@ -0,0 +1,153 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.util.*;
+
+public class DoubleArraySet extends PrimitiveArraySet {
+    private final double[] array;
+
+    public DoubleArraySet(double... elements) {
+        this(unique(elements), 0);
+    }
+
+    private DoubleArraySet(double[] array, int from) {
+        this(array, from, array.length);
+    }
+
+    private static double[] unique(double[] elements) {
+        double[] sorted = elements.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || Double.compare(sorted[size - 1], sorted[i]) != 0) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private DoubleArraySet(double[] array, int from, int to) {
+        super(from, to);
+        this.array = array;
+    }
+
+    // array must be sorted and contain no duplicates, it is not copied
+    static DoubleArraySet ofSorted(double[] array) {
+        return new DoubleArraySet(array, 0);
+    }
+
+    public double getDouble(int index) {
+        checkIndex(index);
+        return array[from + index];
+    }
+
+    private int search(double key) {
+        return Arrays.binarySearch(array, from, to, key);
+    }
+
+    public boolean contains(double key) {
+        return search(key) >= 0;
+    }
+
+    public int indexOf(double key) {
+        return indexOfFound(search(key));
+    }
+
+    public int lowerIndex(double key) {
+        return lowerOf(search(key));
+    }
+
+    public int floorIndex(double key) {
+        return floorOf(search(key));
+    }
+
+    public int ceilingIndex(double key) {
+        return ceilingOf(search(key));
+    }
+
+    public int higherIndex(double key) {
+        return higherOf(search(key));
+    }
+
+    private int start(double key, boolean inclusive) {
+        return startOf(search(key), inclusive);
+    }
+
+    private int end(double key, boolean inclusive) {
+        return endOf(search(key), inclusive);
+    }
+
+    public DoubleArraySet subSet(double fromElement, boolean fromInclusive, double toElement, boolean toInclusive) {
+        if (Double.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        int inFrom = start(fromElement, fromInclusive);
+        int inTo = end(toElement, toInclusive);
+        return new DoubleArraySet(array, inFrom, Math.max(inFrom, inTo));
+    }
+
+    public DoubleArraySet headSet(double toElement, boolean inclusive) {
+        return new DoubleArraySet(array, from, end(toElement, inclusive));
+    }
+
+    public DoubleArraySet tailSet(double fromElement, boolean inclusive) {
+        return new DoubleArraySet(array, start(fromElement, inclusive), to);
+    }
+
+    public double first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("first()");
+        }
+        return array[from];
+    }
+
+    public double last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("last()");
+        }
+        return array[to - 1];
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int i = from;
+
+            @Override
+            public boolean hasNext() {
+                return i < to;
+            }
+
+            @Override
+            public double nextDouble() {
+                if (i >= to) {
+                    throw new NoSuchElementException();
+                }
+                return array[i++];
+            }
+        };
+    }
+
+    public ArraySet<Double> boxed() {
+        return ArraySet.ofSorted(new Boxed(), null);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private class Boxed extends AbstractList<Double> implements RandomAccess {
+        @Override
+        public Double get(int index) {
+            return getDouble(index);
+        }
+
+        @Override
+        public int size() {
+            return DoubleArraySet.this.size();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable sorted set of strings kept front-coded in a single byte array.
+ *
+ * <p>Strings are stored as UTF-8 and ordered by code points, like
+ * {@link KeyCodec#STRING}. Every {@value #BLOCK} strings form a block: the
+ * first string of a block is stored whole, the others as the number of
+ * bytes shared with the previous string followed by the rest, so long
+ * common prefixes (URLs, paths) are stored once per block. Lookups binary
+ * search the sparse index of block offsets and then scan one block.
+ */
+public class FrontCodedStringSet implements Iterable<String> {
+    private static final int BLOCK = 16;
+
+    private final byte[] bytes;
+    // offset of the first entry of every block in bytes
+    private final int[] blocks;
+    private final int count;
+    private final int from;
+    private final int to;
+
+    public FrontCodedStringSet(Collection<String> strings) {
+        byte[][] keys = new byte[strings.size()][];
+        int size = 0;
+        for (String s : strings) {
+            keys[size++] = s.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(keys, FrontCodedStringSet::compare);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] blocks = new int[(size + BLOCK - 1) / BLOCK];
+        byte[] previous = null;
+        int count = 0;
+        for (byte[] key : keys) {
+            if (previous != null && compare(previous, key) == 0) {
+                continue;
+            }
+            int shared = 0;
+            if (count % BLOCK == 0) {
+                blocks[count / BLOCK] = out.size();
+            } else {
+                int max = Math.min(previous.length, key.length);
+                while (shared < max && previous[shared] == key[shared]) {
+                    shared++;
+                }
+            }
+            putVarInt(out, shared);
+            putVarInt(out, key.length - shared);
+            out.write(key, shared, key.length - shared);
+            previous = key;
+            count++;
+        }
+        this.bytes = out.toByteArray();
+        this.blocks = Arrays.copyOf(blocks, (count + BLOCK - 1) / BLOCK);
+        this.count = count;
+        this.from = 0;
+        this.to = count;
+    }
+
+    private FrontCodedStringSet(FrontCodedStringSet set, int from, int to) {
+        this.bytes = set.bytes;
+        this.blocks = set.blocks;
+        this.count = set.count;
+        this.from = from;
+        this.to = Math.max(from, to);
+    }
+
+    private static void putVarInt(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write(v & 0x7F | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return compare(a, 0, a.length, b);
+    }
+
+    // compares bytes[offset..offset + length) with key as unsigned bytes
+    private static int compare(byte[] bytes, int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (bytes[offset + i] & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Sequential decoder of entries, keeps the current string in a reusable buffer.
+     */
+    private class Reader {
+        private int position;
+        private byte[] current = new byte[64];
+        private int length;
+
+        Reader(int index) {
+            position = blocks[index / BLOCK];
+            for (int i = index % BLOCK; i >= 0; i--) {
+                next();
+            }
+        }
+
+        private int getVarInt() {
+            int v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+        }
+
+        void next() {
+            int shared = getVarInt();
+            int rest = getVarInt();
+            if (current.length < shared + rest) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, shared + rest));
+            }
+            System.arraycopy(bytes, position, current, shared, rest);
+            position += rest;
+            length = shared + rest;
+        }
+
+        int compareTo(byte[] key) {
+            return compare(current, 0, length, key);
+        }
+
+        String string() {
+            return new String(current, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // binary search result for key in the whole set
+    private int searchAll(byte[] key) {
+        // last block whose first string is <= key
+        int lo = 0;
+        int hi = blocks.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            // first entries of blocks share nothing, skip the single zero byte
+            int position = blocks[mid] + 1;
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int cmp = compare(bytes, position, length, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid * BLOCK;
+            }
+        }
+        if (hi < 0) {
+            return -1;
+        }
+        int end = Math.min((hi + 1) * BLOCK, count);
+        Reader reader = new Reader(hi * BLOCK);
+        for (int i = hi * BLOCK; ; ) {
+            int cmp = reader.compareTo(key);
+            if (cmp == 0) {
+                return i;
+            }
+            if (cmp > 0) {
+                return -i - 1;
+            }
+            if (++i == end) {
+                return -i - 1;
+            }
+            reader.next();
+        }
+    }
+
+    // binary search result for key in [from, to), indices are absolute
+    private int search(String key) {
+        int i = searchAll(key.getBytes(StandardCharsets.UTF_8));
+        if (i >= from && i < to) {
+            return i;
+        }
+        return -Math.min(Math.max(i >= 0 ? i : -i - 1, from), to) - 1;
+    }
+
+    private int start(String key, boolean inclusive) {
+        int i = search(key);
+        return i >= 0 ? (inclusive ? i : i + 1) : -i - 1;
+    }
+
+    private int end(String key, boolean inclusive) {
+        int i = search(key);
+        return i >= 0 ? (inclusive ? i + 1 : i) : -i - 1;
+    }
+
+    private String getElement(int i) {
+        return i >= from && i < to ? new Reader(i).string() : null;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return new Reader(from + index).string();
+    }
+
+    public boolean contains(String key) {
+        return search(key) >= 0;
+    }
+
+    public int indexOf(String key) {
+        int i = search(key);
+        return i >= 0 ? i - from : -1;
+    }
+
+    public String lower(String key) {
+        return getElement(end(key, false) - 1);
+    }
+
+    public String floor(String key) {
+        return getElement(end(key, true) - 1);
+    }
+
+    public String ceiling(String key) {
+        return getElement(start(key, true));
+    }
+
+    public String higher(String key) {
+        return getElement(start(key, false));
+    }
+
+    public FrontCodedStringSet subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive) {
+        if (compare(fromElement.getBytes(StandardCharsets.UTF_8), toElement.getBytes(StandardCharsets.UTF_8)) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return new FrontCodedStringSet(this, start(fromElement, fromInclusive), end(toElement, toInclusive));
+    }
+
+    public FrontCodedStringSet headSet(String toElement, boolean inclusive) {
+        return new FrontCodedStringSet(this, from, end(toElement, inclusive));
+    }
+
+    public FrontCodedStringSet tailSet(String fromElement, boolean inclusive) {
+        return new FrontCodedStringSet(this, start(fromElement, inclusive), to);
+    }
+
+    /**
+     * Strings of this set that start with the prefix.
+     */
+    public FrontCodedStringSet prefixSet(String prefix) {
+        int start = start(prefix, true);
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        // smallest byte string greater than every string with this prefix
+        int n = key.length;
+        while (n > 0 && key[n - 1] == (byte) 0xFF) {
+            n--;
+        }
+        if (n == 0) {
+            return new FrontCodedStringSet(this, start, to);
+        }
+        byte[] bound = Arrays.copyOf(key, n);
+        bound[n - 1]++;
+        int end = searchAll(bound);
+        end = end >= 0 ? end : -end - 1;
+        return new FrontCodedStringSet(this, start, Math.min(end, to));
+    }
+
+    public String first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("first()");
+        }
+        return get(0);
+    }
+
+    public String last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("last()");
+        }
+        return get(size() - 1);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int i = from;
+            private Reader reader;
+
+            @Override
+            public boolean hasNext() {
+                return i < to;
+            }
+
+            @Override
+            public String next() {
+                if (i >= to) {
+                    throw new NoSuchElementException();
+                }
+                if (reader == null) {
+                    reader = new Reader(i);
+                } else {
+                    reader.next();
+                }
+                i++;
+                return reader.string();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (String s : this) {
+            joiner.add(s);
+        }
+        return joiner.toString();
+    }
+}
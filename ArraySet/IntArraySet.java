@@ -0,0 +1,153 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.util.*;
+
+public class IntArraySet extends PrimitiveArraySet {
+    private final int[] array;
+
+    public IntArraySet(int... elements) {
+        this(unique(elements), 0);
+    }
+
+    private IntArraySet(int[] array, int from) {
+        this(array, from, array.length);
+    }
+
+    private static int[] unique(int[] elements) {
+        int[] sorted = elements.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private IntArraySet(int[] array, int from, int to) {
+        super(from, to);
+        this.array = array;
+    }
+
+    // array must be sorted and contain no duplicates, it is not copied
+    static IntArraySet ofSorted(int[] array) {
+        return new IntArraySet(array, 0);
+    }
+
+    public int getInt(int index) {
+        checkIndex(index);
+        return array[from + index];
+    }
+
+    private int search(int key) {
+        return Arrays.binarySearch(array, from, to, key);
+    }
+
+    public boolean contains(int key) {
+        return search(key) >= 0;
+    }
+
+    public int indexOf(int key) {
+        return indexOfFound(search(key));
+    }
+
+    public int lowerIndex(int key) {
+        return lowerOf(search(key));
+    }
+
+    public int floorIndex(int key) {
+        return floorOf(search(key));
+    }
+
+    public int ceilingIndex(int key) {
+        return ceilingOf(search(key));
+    }
+
+    public int higherIndex(int key) {
+        return higherOf(search(key));
+    }
+
+    private int start(int key, boolean inclusive) {
+        return startOf(search(key), inclusive);
+    }
+
+    private int end(int key, boolean inclusive) {
+        return endOf(search(key), inclusive);
+    }
+
+    public IntArraySet subSet(int fromElement, boolean fromInclusive, int toElement, boolean toInclusive) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        int inFrom = start(fromElement, fromInclusive);
+        int inTo = end(toElement, toInclusive);
+        return new IntArraySet(array, inFrom, Math.max(inFrom, inTo));
+    }
+
+    public IntArraySet headSet(int toElement, boolean inclusive) {
+        return new IntArraySet(array, from, end(toElement, inclusive));
+    }
+
+    public IntArraySet tailSet(int fromElement, boolean inclusive) {
+        return new IntArraySet(array, start(fromElement, inclusive), to);
+    }
+
+    public int first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("first()");
+        }
+        return array[from];
+    }
+
+    public int last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("last()");
+        }
+        return array[to - 1];
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int i = from;
+
+            @Override
+            public boolean hasNext() {
+                return i < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (i >= to) {
+                    throw new NoSuchElementException();
+                }
+                return array[i++];
+            }
+        };
+    }
+
+    public ArraySet<Integer> boxed() {
+        return ArraySet.ofSorted(new Boxed(), null);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private class Boxed extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(int index) {
+            return getInt(index);
+        }
+
+        @Override
+        public int size() {
+            return IntArraySet.this.size();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Order preserving binary encoding of keys for {@link MappedArraySet}:
+ * keys compare like their encodings compared as unsigned bytes.
+ */
+public interface KeyCodec<T> {
+    /**
+     * Size of every encoded key in bytes, or {@code 0} if keys have variable size.
+     */
+    int width();
+
+    byte[] encode(T key);
+
+    T decode(byte[] bytes);
+
+    KeyCodec<Integer> INT = new KeyCodec<Integer>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public byte[] encode(Integer key) {
+            int v = key ^ Integer.MIN_VALUE;
+            return new byte[] {(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            int v = 0;
+            for (byte b : bytes) {
+                v = v << 8 | b & 0xFF;
+            }
+            return v ^ Integer.MIN_VALUE;
+        }
+    };
+
+    KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public byte[] encode(Long key) {
+            long v = key ^ Long.MIN_VALUE;
+            byte[] bytes = new byte[Long.BYTES];
+            for (int i = Long.BYTES - 1; i >= 0; i--, v >>>= 8) {
+                bytes[i] = (byte) v;
+            }
+            return bytes;
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            long v = 0;
+            for (byte b : bytes) {
+                v = v << 8 | b & 0xFF;
+            }
+            return v ^ Long.MIN_VALUE;
+        }
+    };
+
+    /**
+     * UTF-8 strings, ordered by code points.
+     */
+    KeyCodec<String> STRING = new KeyCodec<String>() {
+        @Override
+        public int width() {
+            return 0;
+        }
+
+        @Override
+        public byte[] encode(String key) {
+            return key.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
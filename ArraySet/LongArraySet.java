@@ -0,0 +1,153 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.util.*;
+
+public class LongArraySet extends PrimitiveArraySet {
+    private final long[] array;
+
+    public LongArraySet(long... elements) {
+        this(unique(elements), 0);
+    }
+
+    private LongArraySet(long[] array, int from) {
+        this(array, from, array.length);
+    }
+
+    private static long[] unique(long[] elements) {
+        long[] sorted = elements.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private LongArraySet(long[] array, int from, int to) {
+        super(from, to);
+        this.array = array;
+    }
+
+    // array must be sorted and contain no duplicates, it is not copied
+    static LongArraySet ofSorted(long[] array) {
+        return new LongArraySet(array, 0);
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        return array[from + index];
+    }
+
+    private int search(long key) {
+        return Arrays.binarySearch(array, from, to, key);
+    }
+
+    public boolean contains(long key) {
+        return search(key) >= 0;
+    }
+
+    public int indexOf(long key) {
+        return indexOfFound(search(key));
+    }
+
+    public int lowerIndex(long key) {
+        return lowerOf(search(key));
+    }
+
+    public int floorIndex(long key) {
+        return floorOf(search(key));
+    }
+
+    public int ceilingIndex(long key) {
+        return ceilingOf(search(key));
+    }
+
+    public int higherIndex(long key) {
+        return higherOf(search(key));
+    }
+
+    private int start(long key, boolean inclusive) {
+        return startOf(search(key), inclusive);
+    }
+
+    private int end(long key, boolean inclusive) {
+        return endOf(search(key), inclusive);
+    }
+
+    public LongArraySet subSet(long fromElement, boolean fromInclusive, long toElement, boolean toInclusive) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        int inFrom = start(fromElement, fromInclusive);
+        int inTo = end(toElement, toInclusive);
+        return new LongArraySet(array, inFrom, Math.max(inFrom, inTo));
+    }
+
+    public LongArraySet headSet(long toElement, boolean inclusive) {
+        return new LongArraySet(array, from, end(toElement, inclusive));
+    }
+
+    public LongArraySet tailSet(long fromElement, boolean inclusive) {
+        return new LongArraySet(array, start(fromElement, inclusive), to);
+    }
+
+    public long first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("first()");
+        }
+        return array[from];
+    }
+
+    public long last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("last()");
+        }
+        return array[to - 1];
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int i = from;
+
+            @Override
+            public boolean hasNext() {
+                return i < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (i >= to) {
+                    throw new NoSuchElementException();
+                }
+                return array[i++];
+            }
+        };
+    }
+
+    public ArraySet<Long> boxed() {
+        return ArraySet.ofSorted(new Boxed(), null);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private class Boxed extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            return getLong(index);
+        }
+
+        @Override
+        public int size() {
+            return LongArraySet.this.size();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only sorted set stored in a memory-mapped file, so it may be larger
+ * than the heap and is available right after {@link #open}.
+ *
+ * <p>File layout: {@code [int MAGIC][int width][long count][long offsetsStart]}
+ * followed by the encoded keys in {@link KeyCodec} order. Variable width
+ * keys ({@code width == 0}) are followed by {@code count + 1} key offsets.
+ * Lookups encode the searched key once and compare it with the mapped bytes
+ * directly, elements are only decoded when returned.
+ */
+public class MappedArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int MAGIC = 0x4D415331;
+    private static final int HEADER = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private final MappedBytes bytes;
+    private final KeyCodec<T> codec;
+    private final int width;
+    private final long offsetsStart;
+    private final long from;
+    private final long to;
+    private final boolean descending;
+    private final Comparator<T> comparator;
+
+    private MappedArraySet(MappedBytes bytes, KeyCodec<T> codec, int width, long offsetsStart,
+                           long from, long to, boolean descending) {
+        this.bytes = bytes;
+        this.codec = codec;
+        this.width = width;
+        this.offsetsStart = offsetsStart;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+        Comparator<T> ascending = (a, b) -> compareBytes(codec.encode(a), codec.encode(b));
+        this.comparator = descending ? ascending.reversed() : ascending;
+    }
+
+    public static <T> MappedArraySet<T> open(Path file, KeyCodec<T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedBytes bytes = new MappedBytes(channel);
+            if (bytes.size() < HEADER || bytes.getInt(0) != MAGIC) {
+                throw new IOException("Not a mapped set: " + file);
+            }
+            int width = bytes.getInt(Integer.BYTES);
+            if (width != codec.width()) {
+                throw new IOException("Key width " + width + " does not match codec width " + codec.width());
+            }
+            long count = bytes.getLong(2 * Integer.BYTES);
+            long offsetsStart = bytes.getLong(2 * Integer.BYTES + Long.BYTES);
+            return new MappedArraySet<>(bytes, codec, width, offsetsStart, 0, count, false);
+        }
+    }
+
+    /**
+     * Writes keys given in codec order to the file, equal keys are written once.
+     * Memory use does not depend on the number of keys.
+     *
+     * @throws IllegalArgumentException if keys are not sorted or have wrong width
+     */
+    public static <T> void write(Path file, Iterable<? extends T> sorted, KeyCodec<T> codec) throws IOException {
+        int width = codec.width();
+        Path offsets = width == 0 ? Files.createTempFile(file.toAbsolutePath().getParent(), "offsets", ".tmp") : null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.write(new byte[HEADER]);
+            long position = HEADER;
+            long count = 0;
+            try (DataOutputStream offsetsOut = offsets == null ? null
+                    : new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(offsets), 1 << 16))) {
+                byte[] previous = null;
+                for (T key : sorted) {
+                    byte[] encoded = codec.encode(key);
+                    if (width != 0 && encoded.length != width) {
+                        throw new IllegalArgumentException("Encoded key has " + encoded.length + " bytes instead of " + width);
+                    }
+                    if (previous != null) {
+                        int cmp = compareBytes(previous, encoded);
+                        if (cmp > 0) {
+                            throw new IllegalArgumentException("Keys are not sorted");
+                        }
+                        if (cmp == 0) {
+                            continue;
+                        }
+                    }
+                    if (offsetsOut != null) {
+                        offsetsOut.writeLong(position);
+                    }
+                    out.write(encoded);
+                    position += encoded.length;
+                    count++;
+                    previous = encoded;
+                }
+                if (offsetsOut != null) {
+                    offsetsOut.writeLong(position);
+                }
+            }
+            if (offsets != null) {
+                Files.copy(offsets, out);
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(width).putLong(count).putLong(position).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            if (offsets != null) {
+                Files.delete(offsets);
+            }
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private long keyPosition(long i) {
+        return width != 0 ? HEADER + i * width : bytes.getLong(offsetsStart + i * Long.BYTES);
+    }
+
+    private int keyLength(long i) {
+        return width != 0 ? width : (int) (bytes.getLong(offsetsStart + (i + 1) * Long.BYTES) - keyPosition(i));
+    }
+
+    // binary search in ascending order within the window
+    private long search(byte[] key) {
+        long lo = from;
+        long hi = to - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int cmp = bytes.compare(keyPosition(mid), keyLength(mid), key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private T getElement(long i) {
+        if (i >= from && i < to) {
+            return codec.decode(bytes.copy(keyPosition(i), keyLength(i)));
+        }
+        return null;
+    }
+
+    // first index with element >= key (> key if not inclusive)
+    private long start(T key, boolean inclusive) {
+        long i = search(codec.encode(key));
+        return i >= 0 ? (inclusive ? i : i + 1) : -i - 1;
+    }
+
+    // index after the last element <= key (< key if not inclusive)
+    private long end(T key, boolean inclusive) {
+        long i = search(codec.encode(key));
+        return i >= 0 ? (inclusive ? i + 1 : i) : -i - 1;
+    }
+
+    private T below(T t, boolean inclusive) {
+        return getElement(end(t, inclusive) - 1);
+    }
+
+    private T above(T t, boolean inclusive) {
+        return getElement(start(t, inclusive));
+    }
+
+    @Override
+    public T lower(T t) {
+        return descending ? above(t, false) : below(t, false);
+    }
+
+    @Override
+    public T floor(T t) {
+        return descending ? above(t, true) : below(t, true);
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return descending ? below(t, true) : above(t, true);
+    }
+
+    @Override
+    public T higher(T t) {
+        return descending ? below(t, false) : above(t, false);
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException("pollFirst()");
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException("pollLast()");
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private long i = descending ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return i >= from && i < to;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T element = getElement(i);
+                i += descending ? -1 : 1;
+                return element;
+            }
+        };
+    }
+
+    private MappedArraySet<T> window(long from, long to, boolean descending) {
+        return new MappedArraySet<>(bytes, codec, width, offsetsStart, from, Math.max(from, to), descending);
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return window(from, to, !descending);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (comparator.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        if (descending) {
+            return window(start(toElement, toInclusive), end(fromElement, fromInclusive), true);
+        }
+        return window(start(fromElement, fromInclusive), end(toElement, toInclusive), false);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        if (descending) {
+            return window(start(toElement, inclusive), to, true);
+        }
+        return window(from, end(toElement, inclusive), false);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        if (descending) {
+            return window(from, end(fromElement, inclusive), true);
+        }
+        return window(start(fromElement, inclusive), to, false);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public T first() {
+        if (from == to) {
+            throw new NoSuchElementException("first()");
+        }
+        return getElement(descending ? to - 1 : from);
+    }
+
+    @Override
+    public T last() {
+        if (from == to) {
+            throw new NoSuchElementException("last()");
+        }
+        return getElement(descending ? from : to - 1);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(to - from, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        long check = search(codec.encode((T) o));
+        return (check >= 0);
+    }
+}
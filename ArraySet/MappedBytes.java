@@ -0,0 +1,72 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// read-only mapping of a whole file, split into segments since one mapping is limited to 2 GB
+class MappedBytes {
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    MappedBytes(FileChannel channel) throws IOException {
+        size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, SEGMENT_MASK + 1));
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(long position) {
+        int v = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            v = v << 8 | get(position + i) & 0xFF;
+        }
+        return v;
+    }
+
+    long getLong(long position) {
+        int segment = (int) (position >>> SEGMENT_BITS);
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset + Long.BYTES <= segments[segment].limit()) {
+            return segments[segment].getLong(offset);
+        }
+        long v = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            v = v << 8 | get(position + i) & 0xFF;
+        }
+        return v;
+    }
+
+    // unsigned lexicographic comparison of the bytes at position with key
+    int compare(long position, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(get(position + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    byte[] copy(long position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = get(position + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ *  Mutable sorted set built from immutable {@link ArraySet} snapshots.
+ *
+ *  <p>Additions and removals are buffered in a small concurrent
+ *  delta map on top of the current snapshot. When the delta grows
+ *  large enough it is merged with the snapshot into a new
+ *  {@link ArraySet}, which then replaces both. Readers never lock:
+ *  they read the current snapshot and delta through a single
+ *  volatile reference. Updates are serialized.
+ *
+ *  <p>A merge copies the whole snapshot, so it runs only once the
+ *  delta holds at least the threshold or one eighth of the snapshot
+ *  size, whichever is larger. An update then copies a constant
+ *  number of elements on average, plus the O(log n) insertion into
+ *  the delta.
+ *
+ * @param <T>
+ *        Type of elements.
+ */
+public class MergingArraySet<T> {
+    private static final int DEFAULT_THRESHOLD = 4096;
+    // the delta is merged once it reaches this fraction of the snapshot size
+    private static final int MERGE_RATIO = 8;
+
+    // base is immutable and delta only grows until the whole state is replaced by a merge
+    private static final class State<T> {
+        final ArraySet<T> base;
+        final ConcurrentSkipListMap<T, Boolean> delta;
+
+        State(ArraySet<T> base, Comparator<? super T> comparator) {
+            this.base = base;
+            this.delta = new ConcurrentSkipListMap<>(comparator);
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private final int threshold;
+    private volatile State<T> state;
+
+    /**
+     * Creates an empty set.
+     * @param comparator
+     *        Order of elements, <code>null</code> for the natural order.
+     */
+    public MergingArraySet(Comparator<? super T> comparator) {
+        this(Collections.emptyList(), comparator, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a set of the given elements.
+     * @param collection
+     *        Initial elements, duplicates are dropped.
+     * @param comparator
+     *        Order of elements, <code>null</code> for the natural order.
+     * @param threshold
+     *        Minimal number of buffered updates that triggers a merge,
+     *        large snapshots wait for one eighth of their size.
+     * @throws IllegalArgumentException
+     *        If <code>threshold</code> is less than one.
+     */
+    public MergingArraySet(Collection<? extends T> collection, Comparator<? super T> comparator, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold < 1");
+        }
+        this.comparator = comparator;
+        this.threshold = threshold;
+        this.state = new State<>(new ArraySet<>(collection, comparator), comparator);
+    }
+
+    /**
+     * Checks the element against the buffered updates and the snapshot, without locking.
+     * @param o
+     *        Element to look for.
+     * @return
+     *        <code>true</code> if the element was added last or is in
+     *        the snapshot and was not removed since.
+     */
+    public boolean contains(Object o) {
+        State<T> current = state;
+        Boolean present = current.delta.get(o);
+        return present != null ? present : current.base.contains(o);
+    }
+
+    /**
+     * Adds the element, merging the buffered updates if there are enough of them.
+     * @param t
+     *        Element to add.
+     */
+    public synchronized void add(T t) {
+        update(t, true);
+    }
+
+    /**
+     * Removes the element, merging the buffered updates if there are enough of them.
+     * @param t
+     *        Element to remove.
+     */
+    public synchronized void remove(T t) {
+        update(t, false);
+    }
+
+    private void update(T t, boolean present) {
+        State<T> current = state;
+        current.delta.put(t, present);
+        if (current.delta.size() >= Math.max(threshold, current.base.size() / MERGE_RATIO)) {
+            merge();
+        }
+    }
+
+    /**
+     * Returns the last merged snapshot without locking. Updates still
+     * buffered are not part of it, use {@link #merge} for a set that
+     * reflects every update so far.
+     * @return
+     *        Immutable set as of the last merge.
+     */
+    public ArraySet<T> snapshot() {
+        return state.base;
+    }
+
+    /**
+     * Merges the buffered updates into a new snapshot. Takes time
+     * linear in the size of the set if there is anything to merge.
+     * @return
+     *        Immutable set reflecting every update so far.
+     */
+    public synchronized ArraySet<T> merge() {
+        State<T> current = state;
+        if (current.delta.isEmpty()) {
+            return current.base;
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<? super T> cmp = comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+        List<T> result = new ArrayList<>(current.base.size() + current.delta.size());
+        Iterator<T> base = current.base.iterator();
+        Iterator<Map.Entry<T, Boolean>> delta = current.delta.entrySet().iterator();
+        T b = base.hasNext() ? base.next() : null;
+        Map.Entry<T, Boolean> d = delta.hasNext() ? delta.next() : null;
+        while (b != null || d != null) {
+            int c = b == null ? 1 : d == null ? -1 : cmp.compare(b, d.getKey());
+            if (c < 0) {
+                result.add(b);
+                b = base.hasNext() ? base.next() : null;
+            } else {
+                if (d.getValue()) {
+                    result.add(d.getKey());
+                }
+                if (c == 0) {
+                    b = base.hasNext() ? base.next() : null;
+                }
+                d = delta.hasNext() ? delta.next() : null;
+            }
+        }
+        ArraySet<T> merged = ArraySet.ofSorted(result, comparator);
+        state = new State<>(merged, comparator);
+        return merged;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.ifmo.ctddev.kustareva.arrayset;
+
+/**
+ * Window {@code [from, to)} over a sorted primitive array, shared by
+ * {@link IntArraySet}, {@link LongArraySet} and {@link DoubleArraySet}.
+ * Subclasses do the binary search on their array type, this class turns
+ * the absolute search results into indices relative to the window.
+ */
+abstract class PrimitiveArraySet {
+    final int from;
+    final int to;
+
+    PrimitiveArraySet(int from, int to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+    }
+
+    int indexOfFound(int i) {
+        return i >= 0 ? i - from : -1;
+    }
+
+    int lowerOf(int i) {
+        return (i >= 0 ? i : -i - 1) - 1 - from;
+    }
+
+    int floorOf(int i) {
+        return (i >= 0 ? i : -i - 2) - from;
+    }
+
+    int ceilingOf(int i) {
+        i = i >= 0 ? i : -i - 1;
+        return i < to ? i - from : -1;
+    }
+
+    int higherOf(int i) {
+        i = i >= 0 ? i + 1 : -i - 1;
+        return i < to ? i - from : -1;
+    }
+
+    static int startOf(int i, boolean inclusive) {
+        return i >= 0 ? (inclusive ? i : i + 1) : -i - 1;
+    }
+
+    static int endOf(int i, boolean inclusive) {
+        return i >= 0 ? (inclusive ? i + 1 : i) : -i - 1;
+    }
+}
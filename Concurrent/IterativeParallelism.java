@@ -3,6 +3,12 @@ package ru.ifmo.ctddev.kustareva.concurrent;
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -13,11 +19,34 @@ import java.util.function.Predicate;
  *  functions using several threads.
  */
 public class IterativeParallelism implements ListIP {
+    /**
+     * Shared pool of daemon threads used when neither a mapper
+     * nor an executor is given: threads of finished calls are
+     * reused by the next ones instead of being created again.
+     */
+    private static final ExecutorService CARRIERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "IterativeParallelism carrier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor executor;
 
     /**
      * Default constructor.
      */
-    public IterativeParallelism() {}
+    public IterativeParallelism() {
+        this.executor = CARRIERS;
+    }
+
+    /**
+     * Constructor which runs groups of elements on the given executor.
+     * @param executor
+     *        Executor for processing.
+     */
+    public IterativeParallelism(Executor executor) {
+        this.executor = executor;
+    }
 
     /**
      * The method returns concatenation of the list elements.
@@ -161,10 +190,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        BinaryOperator<Boolean> all = (a, b) -> a && b;
-        SemiMonoid<Boolean> monoid = new SemiMonoid<>(all, () -> true);
-        BiFunction<Boolean, T, Boolean> bi = (a, b) -> a && predicate.test(b);
-        return parallel(i, list, monoid, bi);
+        return find(i, list, predicate.negate(), false) < 0;
     }
 
     /**
@@ -187,7 +213,116 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean any(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return !all(i, list, predicate.negate());
+        return find(i, list, predicate, false) >= 0;
+    }
+
+    /**
+     * The method returns the first element that
+     * satisfies the predicate.
+     * @param i
+     *        Number of threads.
+     * @param list
+     *        List for processing.
+     * @param predicate
+     *        Given predicate.
+     * @param <T>
+     *        Type of elements in given list.
+     * @return
+     *        The first element that satisfies the predicate
+     *        or empty optional if there is no such element.
+     * @throws InterruptedException
+     *        If activity was interrupted.
+     * @throws NullPointerException
+     *        If the found element is <code>null</code>.
+     */
+    public <T> Optional<T> findFirst(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        int index = find(i, list, predicate, true);
+        return index < 0 ? Optional.empty() : Optional.of(list.get(index));
+    }
+
+    /**
+     * The method returns some element that
+     * satisfies the predicate.
+     * @param i
+     *        Number of threads.
+     * @param list
+     *        List for processing.
+     * @param predicate
+     *        Given predicate.
+     * @param <T>
+     *        Type of elements in given list.
+     * @return
+     *        An element that satisfies the predicate
+     *        or empty optional if there is no such element.
+     * @throws InterruptedException
+     *        If activity was interrupted.
+     * @throws NullPointerException
+     *        If the found element is <code>null</code>.
+     */
+    public <T> Optional<T> findAny(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        int index = find(i, list, predicate, false);
+        return index < 0 ? Optional.empty() : Optional.of(list.get(index));
+    }
+
+    /**
+     * The method returns count of elements that
+     * satisfy the predicate.
+     * @param i
+     *        Number of threads.
+     * @param list
+     *        List for processing.
+     * @param predicate
+     *        Given predicate.
+     * @param <T>
+     *        Type of elements in given list.
+     * @return
+     *        Count of elements that satisfy the predicate.
+     * @throws InterruptedException
+     *        If activity was interrupted.
+     */
+    public <T> int count(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        SemiMonoid<Integer> monoid = new SemiMonoid<>(Integer::sum, () -> 0);
+        BiFunction<Integer, T, Integer> bi = (a, b) -> predicate.test(b) ? a + 1 : a;
+        return parallel(i, list, monoid, bi);
+    }
+
+    /**
+     * The method searches an element that satisfies the
+     * predicate. All threads share the index of the best
+     * match found so far and stop as soon as they can not
+     * improve it, so the rest of the list is not scanned.
+     * @param i
+     *        Number of threads.
+     * @param list
+     *        List for processing.
+     * @param predicate
+     *        Given predicate.
+     * @param first
+     *        If <code>true</code>, the smallest index of a
+     *        matching element is searched, otherwise any.
+     * @param <T>
+     *        Type of elements in given list.
+     * @return
+     *        Index of the found element or <code>-1</code>.
+     * @throws InterruptedException
+     *        If activity was interrupted.
+     */
+    private <T> int find(int i, List<? extends T> list, Predicate<? super T> predicate, boolean first) throws InterruptedException {
+        AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+        run(ranges(i, list.size()), range -> {
+            for (int j = range[0]; j < range[1]; j++) {
+                int best = found.get();
+                if (first ? best < j : best != Integer.MAX_VALUE) {
+                    break;
+                }
+                if (predicate.test(list.get(j))) {
+                    found.accumulateAndGet(j, Math::min);
+                    break;
+                }
+            }
+            return null;
+        });
+        return found.get() == Integer.MAX_VALUE ? -1 : found.get();
     }
 
     /**
@@ -211,34 +346,97 @@ public class IterativeParallelism implements ListIP {
      *        If activity was interrupted.
      */
     private <T, R> R parallel(int i, List<? extends T> list, SemiMonoid<R> monoid, BiFunction<R, ? super T, R> biFunction) throws InterruptedException{
-        if (i > list.size()) {
-            i = list.size();
+        List<List<? extends T> > listOfGroups = new ArrayList<>();
+        for (int[] range : ranges(i, list.size())) {
+            listOfGroups.add(list.subList(range[0], range[1]));
         }
-        int sizeOfGroup = list.size() / i;
-        int ost = list.size() % i;
-        List<R> res = new ArrayList<>(Collections.nCopies(i, null));
-        List<Thread> threads = new ArrayList<>();
-        int size;
-        for (int j = 0, index = 0; j < list.size(); j += size, index++) {
-            size = sizeOfGroup;
+        List<R> res = run(listOfGroups, group -> group.stream().reduce(monoid.getStart(), biFunction, monoid.getOperator()));
+        return res.stream().reduce(monoid.getStart(), monoid.getOperator());
+    }
+
+    /**
+     * The method splits indices of a list into groups
+     * of almost equal sizes.
+     * @param i
+     *        Number of groups.
+     * @param size
+     *        Size of the list.
+     * @return
+     *        Bounds of the groups, from inclusive and
+     *        to exclusive.
+     */
+    private static List<int[]> ranges(int i, int size) {
+        i = Math.max(1, Math.min(i, size));
+        List<int[]> ranges = new ArrayList<>();
+        int sizeOfGroup = size / i;
+        int ost = size % i;
+        int groupSize;
+        for (int j = 0; j < size; j += groupSize) {
+            groupSize = sizeOfGroup;
             if (ost > 0) {
-                size++;
+                groupSize++;
                 ost--;
             }
-            final int ind = index;
-            List<? extends T> group = list.subList(j, Math.min(j + size, list.size()));
-            Thread thread = new Thread(() -> {
-                R r = group.stream().reduce(monoid.getStart(), biFunction, monoid.getOperator());
-                synchronized (res) {
-                    res.set(ind, r);
+            ranges.add(new int[] {j, j + groupSize});
+        }
+        return ranges;
+    }
+
+    /**
+     * The method applies the function to every group
+     * on the executor.
+     * @param groups
+     *        Groups for processing.
+     * @param function
+     *        Given function.
+     * @param <G>
+     *        Type of groups.
+     * @param <R>
+     *        Type of result element.
+     * @return
+     *        Results of the function in order of groups.
+     * @throws InterruptedException
+     *        If activity was interrupted.
+     */
+    private <G, R> List<R> run(List<G> groups, Function<? super G, ? extends R> function) throws InterruptedException {
+        Object[] results = new Object[groups.size()];
+        CountDownLatch done = new CountDownLatch(groups.size());
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int j = 0; j < groups.size(); j++) {
+            final int ind = j;
+            G group = groups.get(j);
+            executor.execute(() -> {
+                try {
+                    results[ind] = function.apply(group);
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
                 }
             });
-            thread.start();
-            threads.add(thread);
         }
-        for (int index = 0; index < i; index++) {
-            threads.get(index).join();
+        done.await();
+        if (error.get() != null) {
+            rethrow(error.get());
         }
-        return res.stream().reduce(monoid.getStart(), monoid.getOperator());
+        // the latch orders the writes of the tasks before this read
+        @SuppressWarnings("unchecked")
+        List<R> res = (List<R>) Arrays.asList(results);
+        return res;
+    }
+
+    /**
+     * The method rethrows a failure of a task in the calling thread.
+     * @param e
+     *        Failure to rethrow.
+     */
+    private static void rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
     }
 }
@@ -0,0 +1,62 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads manifests written by {@link BinaryOutput}, the magic is already consumed.
+ */
+class BinaryManifestReader implements ManifestReader {
+    private static final int FIXED = 1 + 2 * Long.BYTES;
+
+    private final DataInputStream input;
+    private final HashAlgorithm algorithm;
+    private byte[] path = new byte[256];
+
+    BinaryManifestReader(DataInputStream input) throws IOException {
+        this.input = input;
+        byte[] name = new byte[input.readUnsignedByte()];
+        input.readFully(name);
+        algorithm = HashAlgorithm.forName(new String(name, StandardCharsets.US_ASCII));
+        if (input.readUnsignedByte() != algorithm.length()) {
+            throw new IOException("Corrupted manifest header");
+        }
+    }
+
+    @Override
+    public WalkEntry next() throws IOException {
+        int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        int pathLength = length - FIXED - algorithm.length();
+        if (pathLength < 0) {
+            throw new IOException("Corrupted manifest entry");
+        }
+        byte status = input.readByte();
+        byte[] hash = new byte[algorithm.length()];
+        input.readFully(hash);
+        long size = input.readLong();
+        long mtime = input.readLong();
+        if (path.length < pathLength) {
+            path = new byte[Math.max(pathLength, path.length * 2)];
+        }
+        input.readFully(path, 0, pathLength);
+        return new WalkEntry(new String(path, 0, pathLength, StandardCharsets.UTF_8),
+                status == BinaryOutput.FAILED ? null : hash, size, mtime, status == BinaryOutput.TREE);
+    }
+
+    @Override
+    public HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
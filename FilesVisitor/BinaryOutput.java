@@ -0,0 +1,49 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a length-prefixed binary manifest.
+ *
+ * <p>Header: {@code [int MAGIC][byte nameLength][algorithm name][byte hashLength]}.
+ * Each entry: {@code [int length][byte status][hash][long size][long mtime][path]},
+ * where {@code length} counts the bytes after itself, status is
+ * {@link #OK}, {@link #TREE} for tree hashes or {@link #FAILED}
+ * (the hash is zeroed then), mtime is
+ * in milliseconds since the epoch and the path is UTF-8 up to the end of the entry.
+ */
+class BinaryOutput extends ChannelOutput {
+    static final int MAGIC = 0x574C4B4D;
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+    static final byte TREE = 2;
+
+    BinaryOutput(FileChannel channel, HashAlgorithm algorithm) {
+        super(channel, algorithm);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) algorithm.title().length());
+        for (int i = 0; i < algorithm.title().length(); i++) {
+            buffer.put((byte) algorithm.title().charAt(i));
+        }
+        buffer.put((byte) algorithm.length());
+    }
+
+    @Override
+    void write(WalkEntry entry) throws IOException {
+        ensure(Integer.BYTES + 1 + algorithm.length() + 2 * Long.BYTES);
+        buffer.putInt(1 + algorithm.length() + 2 * Long.BYTES + utf8Length(entry.path));
+        if (entry.hash == null) {
+            buffer.put(FAILED);
+            for (int i = 0; i < algorithm.length(); i++) {
+                buffer.put((byte) 0);
+            }
+        } else {
+            buffer.put(entry.tree ? TREE : OK);
+            buffer.put(entry.hash);
+        }
+        buffer.putLong(entry.size);
+        buffer.putLong(entry.mtime);
+        putUtf8(entry.path);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base of the manifest formats. Entries are encoded straight into a
+ * reusable buffer which is flushed to the channel when full, so memory
+ * stays bounded and nothing is allocated per entry.
+ */
+abstract class ChannelOutput implements Closeable {
+    static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    final HashAlgorithm algorithm;
+
+    ChannelOutput(FileChannel channel, HashAlgorithm algorithm) {
+        this.channel = channel;
+        this.algorithm = algorithm;
+    }
+
+    abstract void write(WalkEntry entry) throws IOException;
+
+    void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void putHex(byte[] hash) throws IOException {
+        ensure(algorithm.length() * 2);
+        if (hash == null) {
+            for (int i = 0; i < algorithm.length() * 2; i++) {
+                buffer.put((byte) '0');
+            }
+        } else {
+            for (byte b : hash) {
+                buffer.put(HEX[(b >>> 4) & 0xF]);
+                buffer.put(HEX[b & 0xF]);
+            }
+        }
+    }
+
+    void putAscii(String str) throws IOException {
+        ensure(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            buffer.put((byte) str.charAt(i));
+        }
+    }
+
+    void putUtf8(String str) throws IOException {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                putCodePoint(Character.toCodePoint(c, str.charAt(++i)));
+            } else {
+                putCodePoint(c);
+            }
+        }
+    }
+
+    void putCodePoint(int cp) throws IOException {
+        ensure(4);
+        if (cp < 0x80) {
+            buffer.put((byte) cp);
+        } else if (cp < 0x800) {
+            buffer.put((byte) (0xC0 | cp >> 6));
+            buffer.put((byte) (0x80 | cp & 0x3F));
+        } else if (cp <= Character.MAX_VALUE && Character.isSurrogate((char) cp)) {
+            buffer.put((byte) '?');
+        } else if (cp < 0x10000) {
+            buffer.put((byte) (0xE0 | cp >> 12));
+            buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | cp & 0x3F));
+        } else {
+            buffer.put((byte) (0xF0 | cp >> 18));
+            buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+            buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | cp & 0x3F));
+        }
+    }
+
+    /**
+     * Number of bytes {@link #putUtf8} writes for the string.
+     */
+    static int utf8Length(String str) {
+        int length = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
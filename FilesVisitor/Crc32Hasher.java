@@ -0,0 +1,20 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+class Crc32Hasher implements Hasher {
+    private final CRC32 crc = new CRC32();
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        crc.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        int value = (int) crc.getValue();
+        crc.reset();
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+}
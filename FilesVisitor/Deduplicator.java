@@ -0,0 +1,136 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * Finds files with equal content while reading as few bytes as possible.
+ * Files are first grouped by size, so files of a unique size are never
+ * read. Files in the same size group are compared by the hash of their
+ * first {@link #PREFIX} bytes, and only prefix collisions of larger files
+ * are hashed in full. Empty files are skipped.
+ */
+class Deduplicator {
+    static final int PREFIX = 4096;
+
+    private final Executor executor;
+    private final HashAlgorithm algorithm;
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+
+    Deduplicator(Executor executor, HashAlgorithm algorithm) {
+        this.executor = executor;
+        this.algorithm = algorithm;
+    }
+
+    FileVisitor<Path> visitor() {
+        return new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() > 0) {
+                    bySize.computeIfAbsent(attrs.size(), size -> new ArrayList<>(1)).add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                System.err.println("In visitFileFailed IOException: " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        };
+    }
+
+    /**
+     * Writes groups of duplicates separated by blank lines, larger files first.
+     */
+    void report(TextOutput output) throws IOException, InterruptedException {
+        List<Long> sizes = new ArrayList<>();
+        List<Path> candidates = new ArrayList<>();
+        for (Map.Entry<Long, List<Path>> entry : bySize.entrySet()) {
+            // the same file is visited twice if roots overlap
+            List<Path> files = new ArrayList<>(new LinkedHashSet<>(entry.getValue()));
+            entry.setValue(files);
+            if (files.size() > 1) {
+                sizes.add(entry.getKey());
+                candidates.addAll(files);
+            }
+        }
+        sizes.sort(Comparator.reverseOrder());
+
+        Map<Path, byte[]> prefixes = hashAll(candidates, file -> FileHasher.hashPrefix(file, PREFIX, algorithm));
+        Map<Long, Collection<List<Path>>> collisions = new HashMap<>();
+        Map<Path, Long> full = new HashMap<>();
+        for (long size : sizes) {
+            Collection<List<Path>> groups = group(bySize.get(size), prefixes);
+            collisions.put(size, groups);
+            if (size > PREFIX) {
+                for (List<Path> group : groups) {
+                    for (Path file : group) {
+                        full.put(file, size);
+                    }
+                }
+            }
+        }
+
+        Map<Path, byte[]> hashes = hashAll(full.keySet(), file -> FileHasher.hash(file, full.get(file), algorithm));
+        for (long size : sizes) {
+            // a prefix covers the whole file when it is small enough
+            Map<Path, byte[]> source = size > PREFIX ? hashes : prefixes;
+            for (List<Path> collision : collisions.get(size)) {
+                for (List<Path> duplicates : group(collision, source)) {
+                    for (Path file : duplicates) {
+                        output.write(new WalkEntry(file.toString(), source.get(file), size, -1));
+                    }
+                    output.blankLine();
+                }
+            }
+        }
+    }
+
+    private Map<Path, byte[]> hashAll(Collection<Path> files, Function<Path, byte[]> hash)
+            throws IOException, InterruptedException {
+        Map<Path, FutureTask<byte[]>> tasks = new HashMap<>();
+        for (Path file : files) {
+            FutureTask<byte[]> task = new FutureTask<>(() -> hash.apply(file));
+            executor.execute(task);
+            tasks.put(file, task);
+        }
+        Map<Path, byte[]> result = new HashMap<>();
+        for (Map.Entry<Path, FutureTask<byte[]>> task : tasks.entrySet()) {
+            try {
+                byte[] value = task.getValue().get();
+                if (value != null) {
+                    result.put(task.getKey(), value);
+                }
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Groups files by hash keeping their order, drops unique and unreadable files.
+     */
+    private static Collection<List<Path>> group(List<Path> files, Map<Path, byte[]> hashes) {
+        Map<ByteBuffer, List<Path>> groups = new LinkedHashMap<>();
+        for (Path file : files) {
+            byte[] hash = hashes.get(file);
+            if (hash != null) {
+                groups.computeIfAbsent(ByteBuffer.wrap(hash), key -> new ArrayList<>()).add(file);
+            }
+        }
+        groups.values().removeIf(group -> group.size() < 2);
+        return groups.values();
+    }
+}
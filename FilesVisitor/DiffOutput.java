@@ -0,0 +1,23 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes {@code MARKER HASH path} lines of a manifest diff.
+ */
+class DiffOutput extends TextOutput {
+    static final char ADDED = '+';
+    static final char REMOVED = '-';
+    static final char CHANGED = '*';
+
+    DiffOutput(FileChannel channel, HashAlgorithm algorithm) {
+        super(channel, algorithm);
+    }
+
+    void write(char marker, WalkEntry entry) throws IOException {
+        putCodePoint(marker);
+        putAscii(" ");
+        write(entry);
+    }
+}
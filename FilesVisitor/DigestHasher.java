@@ -0,0 +1,27 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+class DigestHasher implements Hasher {
+    private final MessageDigest md;
+
+    DigestHasher(String algorithm) {
+        try {
+            md = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        md.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        return md.digest();
+    }
+}
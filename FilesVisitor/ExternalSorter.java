@@ -0,0 +1,192 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts manifest entries by path with bounded memory. Entries are
+ * collected into runs of about {@code memory} bytes, each run is sorted
+ * and spilled as a binary manifest, then the runs are merged, at most
+ * {@link #FAN_IN} at a time.
+ */
+class ExternalSorter {
+    static final long RUN_BYTES = 64L << 20;
+    static final int FAN_IN = 64;
+    private static final Comparator<WalkEntry> BY_PATH = Comparator.comparing(entry -> entry.path);
+
+    private final Path temp;
+    private final long memory;
+
+    ExternalSorter(Path temp, long memory) {
+        this.temp = temp;
+        this.memory = memory;
+    }
+
+    /**
+     * Returns a reader over the sorted entries. Entries with equal paths
+     * keep their input order. Closing the reader removes the spilled runs.
+     */
+    ManifestReader sort(ManifestReader input) throws IOException {
+        HashAlgorithm algorithm = input.algorithm();
+        List<Path> runs = new ArrayList<>();
+        try {
+            List<WalkEntry> chunk = new ArrayList<>();
+            long bytes = 0;
+            WalkEntry entry;
+            while ((entry = input.next()) != null) {
+                chunk.add(entry);
+                bytes += 64 + 2L * entry.path.length() + algorithm.length();
+                if (bytes >= memory) {
+                    runs.add(spill(chunk, algorithm));
+                    chunk.clear();
+                    bytes = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                chunk.sort(BY_PATH);
+                return new ListReader(chunk, algorithm);
+            }
+            if (!chunk.isEmpty()) {
+                runs.add(spill(chunk, algorithm));
+            }
+            while (runs.size() > FAN_IN) {
+                List<Path> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += FAN_IN) {
+                    List<Path> group = runs.subList(i, Math.min(i + FAN_IN, runs.size()));
+                    try (ManifestReader reader = new MergeReader(new ArrayList<>(group), algorithm)) {
+                        merged.add(write(reader, algorithm));
+                    }
+                }
+                runs = merged;
+            }
+            return new MergeReader(runs, algorithm);
+        } catch (IOException | RuntimeException e) {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            throw e;
+        }
+    }
+
+    private Path spill(List<WalkEntry> chunk, HashAlgorithm algorithm) throws IOException {
+        chunk.sort(BY_PATH);
+        return write(new ListReader(chunk, algorithm), algorithm);
+    }
+
+    private Path write(ManifestReader reader, HashAlgorithm algorithm) throws IOException {
+        Path run = Files.createTempFile(temp, "walk-run", ".bin");
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE);
+             ChannelOutput output = new BinaryOutput(channel, algorithm)) {
+            WalkEntry entry;
+            while ((entry = reader.next()) != null) {
+                output.write(entry);
+            }
+        }
+        return run;
+    }
+
+    private static class ListReader implements ManifestReader {
+        private final Iterator<WalkEntry> iterator;
+        private final HashAlgorithm algorithm;
+
+        ListReader(List<WalkEntry> entries, HashAlgorithm algorithm) {
+            this.iterator = entries.iterator();
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public WalkEntry next() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public HashAlgorithm algorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs, deletes the runs on close.
+     */
+    private static class MergeReader implements ManifestReader {
+        private final List<Path> runs;
+        private final List<ManifestReader> readers = new ArrayList<>();
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+        private final HashAlgorithm algorithm;
+
+        private static class Head implements Comparable<Head> {
+            final WalkEntry entry;
+            final int index;
+
+            Head(WalkEntry entry, int index) {
+                this.entry = entry;
+                this.index = index;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                int result = entry.path.compareTo(other.entry.path);
+                return result != 0 ? result : Integer.compare(index, other.index);
+            }
+        }
+
+        MergeReader(List<Path> runs, HashAlgorithm algorithm) throws IOException {
+            this.runs = runs;
+            this.algorithm = algorithm;
+            try {
+                for (Path run : runs) {
+                    ManifestReader reader = ManifestReader.open(run);
+                    readers.add(reader);
+                    advance(readers.size() - 1);
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void advance(int index) throws IOException {
+            WalkEntry entry = readers.get(index).next();
+            if (entry != null) {
+                heads.add(new Head(entry, index));
+            }
+        }
+
+        @Override
+        public WalkEntry next() throws IOException {
+            Head head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            advance(head.index);
+            return head.entry;
+        }
+
+        @Override
+        public HashAlgorithm algorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ManifestReader reader : readers) {
+                reader.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class FileHasher {
+    private FileHasher() {}
+
+    /**
+     * Returns the hash of the file, or {@code null} if it could not be read.
+     */
+    static byte[] hash(Path file, long size, HashAlgorithm algorithm) {
+        return hash(file, algorithm, channel -> ReadStrategy.forSize(size).read(channel, algorithm.hasher()));
+    }
+
+    /**
+     * Returns the hash of at most {@code limit} leading bytes of the file,
+     * or {@code null} if it could not be read.
+     */
+    static byte[] hashPrefix(Path file, int limit, HashAlgorithm algorithm) {
+        return hash(file, algorithm, channel -> ReadStrategy.readPrefix(channel, algorithm.hasher(), limit));
+    }
+
+    private interface Reader {
+        void read(FileChannel channel) throws IOException;
+    }
+
+    private static byte[] hash(Path file, HashAlgorithm algorithm, Reader reader) {
+        Hasher hasher = algorithm.hasher();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            reader.read(channel);
+            return hasher.digest();
+        } catch (IOException e) {
+            // drops partial state of the cached hasher
+            hasher.digest();
+            System.err.println("In visitFile IOException: " + e.getMessage());
+        } catch (RuntimeException e) {
+            hasher.digest();
+            System.err.println("In visitFile RuntimeException: " + e.getMessage());
+        }
+        return null;
+    }
+}
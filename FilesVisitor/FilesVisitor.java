@@ -5,58 +5,67 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 public class FilesVisitor extends SimpleFileVisitor<Path> {
-    BufferedWriter writer;
-    String error = "00000000000000000000000000000000";
+    private final Executor executor;
+    private final OrderedWriter writer;
+    private final HashCache cache;
+    private final HashAlgorithm algorithm;
+    private final boolean tree;
+    private final WalkStats stats;
 
-    FilesVisitor(BufferedWriter newWriter) {
+    FilesVisitor(Executor executor, OrderedWriter writer, HashCache cache, HashAlgorithm algorithm, boolean tree,
+                 WalkStats stats) {
         super();
-        writer = newWriter;
+        this.executor = executor;
+        this.writer = writer;
+        this.cache = cache;
+        this.algorithm = algorithm;
+        this.tree = tree;
+        this.stats = stats;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        String hash = error;
         String path = file.toString();
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            FileInputStream input = new FileInputStream(path);
-
-            byte[] b = new byte[1024];
-            int c = 0;
-            while ((c = input.read(b)) >= 0) {
-                md.update(b, 0, c);
-            }
-
-            byte[] data = md.digest();
-
-            StringBuffer sb = new StringBuffer();
-            for (int i = 0; i < data.length; i++) {
-                sb.append(String.format("%02X", data[i]));
+        boolean tree = this.tree && attrs.size() >= TreeHasher.THRESHOLD;
+        HashCache.Key key = cache != null ? new HashCache.Key(file, attrs) : null;
+        if (key != null) {
+            byte[] cached = cache.lookup(key);
+            if (cached != null) {
+                stats.cacheHit();
+                cache.put(key, cached);
+                writer.put(CompletableFuture.completedFuture(new WalkEntry(path, cached, attrs.size(), attrs.lastModifiedTime().toMillis(), tree)));
+                return FileVisitResult.CONTINUE;
             }
-
-            hash = new String(sb);
-        } catch (IOException e) {
-            System.err.println("In visitFile IOException: " + e.getMessage());
-        } catch (RuntimeException e) {
-            System.err.println("In visitFile RuntimeException: " + e.getMessage());
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("In visitFile NoSuchAlgorithmException: " + e.getMessage());
         }
-        writer.write(hash + " " + path);
-        writer.newLine();
+        FutureTask<WalkEntry> task = new FutureTask<>(() -> {
+            long start = System.nanoTime();
+            byte[] hash = tree ? TreeHasher.hash(file, algorithm) : FileHasher.hash(file, attrs.size(), algorithm);
+            if (hash != null) {
+                stats.fileHashed(file, attrs.size(), System.nanoTime() - start);
+            } else {
+                stats.readFailed();
+            }
+            if (key != null && hash != null) {
+                cache.put(key, hash);
+            }
+            return new WalkEntry(path, hash, attrs.size(), attrs.lastModifiedTime().toMillis(), tree);
+        });
+        executor.execute(task);
+        writer.put(task);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
         System.err.println("In visitFileFailed IOException: " + exc.getMessage());
+        stats.visitFailed();
         String path = file.toString();
-        writer.write(error + " " + path);
-        writer.newLine();
+        writer.put(CompletableFuture.completedFuture(new WalkEntry(path, null, -1, -1)));
         return FileVisitResult.CONTINUE;
     }
 
@@ -64,7 +73,8 @@ public class FilesVisitor extends SimpleFileVisitor<Path> {
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
         if (exc != null) {
             System.err.println("In postVisitDirectory IOException: " + exc.getMessage());
+            stats.directoryFailed();
         }
         return FileVisitResult.CONTINUE;
     }
-}
\ No newline at end of file
+}
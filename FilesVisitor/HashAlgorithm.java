@@ -0,0 +1,86 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+/**
+ * Hash functions available to the walker. Cryptographic digests are
+ * backed by {@link java.security.MessageDigest}, the others are only
+ * suitable for change detection and deduplication.
+ */
+enum HashAlgorithm {
+    MD5("md5", 16) {
+        @Override
+        Hasher create() {
+            return new DigestHasher("MD5");
+        }
+    },
+    SHA1("sha-1", 20) {
+        @Override
+        Hasher create() {
+            return new DigestHasher("SHA-1");
+        }
+    },
+    SHA256("sha-256", 32) {
+        @Override
+        Hasher create() {
+            return new DigestHasher("SHA-256");
+        }
+    },
+    XXHASH64("xxhash64", 8) {
+        @Override
+        Hasher create() {
+            return new XxHash64Hasher();
+        }
+    },
+    CRC32("crc32", 4) {
+        @Override
+        Hasher create() {
+            return new Crc32Hasher();
+        }
+    };
+
+    private final String title;
+    private final int length;
+    private final ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(this::create);
+
+    HashAlgorithm(String title, int length) {
+        this.title = title;
+        this.length = length;
+    }
+
+    abstract Hasher create();
+
+    /**
+     * Returns a hasher cached for the current thread.
+     */
+    Hasher hasher() {
+        return hashers.get();
+    }
+
+    String title() {
+        return title;
+    }
+
+    int length() {
+        return length;
+    }
+
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.title.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm " + name);
+    }
+
+    /**
+     * Algorithm of a manifest without header, the digest lengths are distinct.
+     */
+    static HashAlgorithm forLength(int length) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.length == length) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash length " + length);
+    }
+}
@@ -0,0 +1,334 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file hashes between runs.
+ *
+ * <p>The cache file consists of a header, an open addressing table of
+ * record offsets keyed by a 64-bit hash of the absolute path, and the
+ * records themselves. Both the table and the records are memory-mapped,
+ * so lookups do not load the cache into the heap. They are mapped in
+ * segments of 1 GB, so the table holds up to 2^30 slots, enough for
+ * 2^28 files at the load factor used. A record is
+ * {@code [int pathLength][path][long size][long mtime][long fileKey][byte hashLength][hash]},
+ * where {@code fileKey} is a 64-bit hash of the file identity (device
+ * and inode on Unix); records never cross a segment boundary.
+ *
+ * <p>Every file visited during the run is appended to a temporary file.
+ * After {@link #commit()} marks the walk as complete, {@link #close()}
+ * adds the old entries of files that were not visited but still exist
+ * and turns the file into the new cache, so only entries of deleted
+ * files are dropped. Without a commit, for example when the walk failed,
+ * the old cache is left as it was.
+ */
+class HashCache implements Closeable {
+    private static final int MAGIC = 0x57484332;
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT = 1L << SEGMENT_BITS;
+    // slots of 8 bytes in a segment
+    private static final int SLOT_BITS = SEGMENT_BITS - 3;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private final Path file;
+    private final String algorithm;
+
+    private final ByteBuffer[] slots;
+    private final ByteBuffer[] segments;
+    private final int mask;
+
+    private final Path temp;
+    private final DataOutputStream out;
+    private long position;
+    private int count;
+    private long[] hashes = new long[1024];
+    private long[] offsets = new long[1024];
+    // slots of the old cache whose files were visited in this run
+    private final BitSet visited = new BitSet();
+    private boolean committed;
+
+    static final class Key {
+        final byte[] path;
+        final long hash;
+        final long size;
+        final long mtime;
+        final long fileKey;
+
+        Key(Path file, BasicFileAttributes attrs) {
+            path = file.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+            hash = fnv(path);
+            size = attrs.size();
+            mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            Object identity = attrs.fileKey();
+            fileKey = identity == null ? 0 : fnv(identity.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private HashCache(Path file, String algorithm) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.algorithm = algorithm;
+
+        ByteBuffer[] slots = null;
+        ByteBuffer[] segments = new ByteBuffer[0];
+        int mask = 0;
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1024));
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a hash cache: " + this.file);
+            }
+            byte[] name = new byte[header.get()];
+            header.get(name);
+            int slotCount = header.getInt();
+            long recordsLength = header.getLong();
+            if (algorithm.equals(new String(name, StandardCharsets.UTF_8))) {
+                long start = header.position();
+                slots = map(channel, FileChannel.MapMode.READ_ONLY, start, (long) slotCount * Long.BYTES);
+                mask = slotCount - 1;
+                start += (long) slotCount * Long.BYTES;
+                segments = map(channel, FileChannel.MapMode.READ_ONLY, start, recordsLength);
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | RuntimeException e) {
+            System.err.println("In HashCache: cache ignored, " + e.getMessage());
+            slots = null;
+        }
+        this.slots = slots;
+        this.segments = segments;
+        this.mask = slots == null ? 0 : mask;
+
+        Path parent = this.file.getParent();
+        temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+    }
+
+    static HashCache open(Path file, String algorithm) throws IOException {
+        return new HashCache(file, algorithm);
+    }
+
+    private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long start, long length)
+            throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[(int) ((length + SEGMENT - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < buffers.length; i++) {
+            long offset = (long) i << SEGMENT_BITS;
+            buffers[i] = channel.map(mode, start + offset, Math.min(SEGMENT, length - offset));
+        }
+        return buffers;
+    }
+
+    private static ByteBuffer slotSegment(ByteBuffer[] table, int i) {
+        return table[i >>> SLOT_BITS];
+    }
+
+    private static int slotPosition(int i) {
+        return (i & ((1 << SLOT_BITS) - 1)) * Long.BYTES;
+    }
+
+    byte[] lookup(Key key) {
+        if (slots == null) {
+            return null;
+        }
+        for (int i = (int) key.hash & mask; ; i = (i + 1) & mask) {
+            long ref = slotSegment(slots, i).getLong(slotPosition(i));
+            if (ref == 0) {
+                return null;
+            }
+            ref--;
+            ByteBuffer segment = segments[(int) (ref >>> SEGMENT_BITS)];
+            int pos = (int) (ref & (SEGMENT - 1));
+            if (samePath(segment, pos, key.path)) {
+                pos += Integer.BYTES + key.path.length;
+                if (segment.getLong(pos) != key.size
+                        || segment.getLong(pos + Long.BYTES) != key.mtime
+                        || segment.getLong(pos + 2 * Long.BYTES) != key.fileKey) {
+                    return null;
+                }
+                pos += 3 * Long.BYTES;
+                byte[] hash = new byte[segment.get(pos)];
+                for (int j = 0; j < hash.length; j++) {
+                    hash[j] = segment.get(pos + 1 + j);
+                }
+                return hash;
+            }
+        }
+    }
+
+    private static boolean samePath(ByteBuffer segment, int pos, byte[] path) {
+        if (segment.getInt(pos) != path.length) {
+            return false;
+        }
+        pos += Integer.BYTES;
+        for (int i = 0; i < path.length; i++) {
+            if (segment.get(pos + i) != path[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized void put(Key key, byte[] bytes) throws IOException {
+        int slot = slot(key.path, key.hash);
+        if (slot >= 0) {
+            visited.set(slot);
+        }
+        append(key.path, key.hash, key.size, key.mtime, key.fileKey, bytes);
+    }
+
+    // slot of the old cache holding the path, or -1
+    private int slot(byte[] path, long hash) {
+        if (slots == null) {
+            return -1;
+        }
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long ref = slotSegment(slots, i).getLong(slotPosition(i));
+            if (ref == 0) {
+                return -1;
+            }
+            ref--;
+            if (samePath(segments[(int) (ref >>> SEGMENT_BITS)], (int) (ref & (SEGMENT - 1)), path)) {
+                return i;
+            }
+        }
+    }
+
+    private void append(byte[] path, long hash, long size, long mtime, long fileKey, byte[] bytes) throws IOException {
+        int length = Integer.BYTES + path.length + 3 * Long.BYTES + 1 + bytes.length;
+        long left = SEGMENT - (position & (SEGMENT - 1));
+        if (length > left) {
+            for (long i = 0; i < left; i++) {
+                out.write(0);
+            }
+            position += left;
+        }
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        hashes[count] = hash;
+        offsets[count] = position;
+        count++;
+
+        out.writeInt(path.length);
+        out.write(path);
+        out.writeLong(size);
+        out.writeLong(mtime);
+        out.writeLong(fileKey);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+        position += length;
+    }
+
+    /**
+     * Marks the walk as complete, so {@link #close()} replaces the cache file.
+     */
+    synchronized void commit() {
+        committed = true;
+    }
+
+    // appends old entries of files not visited in this run that still exist
+    private void carryOver() throws IOException {
+        if (slots == null) {
+            return;
+        }
+        for (int i = 0; i <= mask; i++) {
+            long ref = slotSegment(slots, i).getLong(slotPosition(i));
+            if (ref == 0 || visited.get(i)) {
+                continue;
+            }
+            ref--;
+            ByteBuffer segment = segments[(int) (ref >>> SEGMENT_BITS)];
+            int pos = (int) (ref & (SEGMENT - 1));
+            byte[] path = new byte[segment.getInt(pos)];
+            pos += Integer.BYTES;
+            for (int j = 0; j < path.length; j++) {
+                path[j] = segment.get(pos + j);
+            }
+            pos += path.length;
+            if (!Files.exists(Paths.get(new String(path, StandardCharsets.UTF_8)))) {
+                continue;
+            }
+            long size = segment.getLong(pos);
+            long mtime = segment.getLong(pos + Long.BYTES);
+            long fileKey = segment.getLong(pos + 2 * Long.BYTES);
+            pos += 3 * Long.BYTES;
+            byte[] hash = new byte[segment.get(pos)];
+            for (int j = 0; j < hash.length; j++) {
+                hash[j] = segment.get(pos + 1 + j);
+            }
+            append(path, fnv(path), size, mtime, fileKey, hash);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        Path result = null;
+        try {
+            if (!committed) {
+                out.close();
+                return;
+            }
+            carryOver();
+            out.close();
+            if (count > MAX_SLOTS / 4) {
+                throw new IOException("Too many files for hash cache: " + count);
+            }
+            int slotCount = Integer.highestOneBit(Math.max(count, 1)) * 4;
+            byte[] name = algorithm.getBytes(StandardCharsets.UTF_8);
+            result = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".new");
+            try (FileChannel channel = FileChannel.open(result, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel records = FileChannel.open(temp, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1 + name.length + Integer.BYTES + Long.BYTES);
+                header.putInt(MAGIC).put((byte) name.length).put(name).putInt(slotCount).putLong(position);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                long start = channel.position();
+                ByteBuffer[] table = map(channel, FileChannel.MapMode.READ_WRITE, start, (long) slotCount * Long.BYTES);
+                int tableMask = slotCount - 1;
+                for (int i = 0; i < count; i++) {
+                    int j = (int) hashes[i] & tableMask;
+                    while (slotSegment(table, j).getLong(slotPosition(j)) != 0) {
+                        j = (j + 1) & tableMask;
+                    }
+                    slotSegment(table, j).putLong(slotPosition(j), offsets[i] + 1);
+                }
+                for (ByteBuffer segment : table) {
+                    ((MappedByteBuffer) segment).force();
+                }
+                start += (long) slotCount * Long.BYTES;
+                for (long done = 0; done < position; ) {
+                    done += records.transferTo(done, position - done, channel.position(start + done));
+                }
+            }
+            Files.move(result, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            if (result != null) {
+                Files.deleteIfExists(result);
+            }
+        }
+    }
+
+    private static long fnv(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ (hash >>> 32);
+    }
+}
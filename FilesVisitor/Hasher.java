@@ -0,0 +1,19 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash function over file content.
+ * Instances are not thread-safe, see {@link HashAlgorithm#hasher()}.
+ */
+interface Hasher {
+    /**
+     * Consumes all remaining bytes of the buffer.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Returns the hash of the consumed bytes and resets the hasher.
+     */
+    byte[] digest();
+}
@@ -0,0 +1,259 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Reads manifests written by {@link JsonOutput}, one object per line.
+ * Keys may come in any order and unknown keys are skipped. The algorithm
+ * is inferred from the length of the first hash that is not {@code null},
+ * entries before it are kept until then.
+ */
+class JsonManifestReader implements ManifestReader {
+    private final BufferedReader reader;
+    private final HashAlgorithm algorithm;
+    // entries read ahead while looking for the first hash
+    private final Queue<Entry> pending = new ArrayDeque<>();
+
+    private static final class Entry {
+        String path;
+        String hash;
+        long size = -1;
+        long mtime = -1;
+        boolean tree;
+    }
+
+    JsonManifestReader(InputStream input) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        HashAlgorithm found = null;
+        for (Entry entry = read(); entry != null; entry = read()) {
+            pending.add(entry);
+            if (entry.hash != null) {
+                if (entry.hash.length() % 2 != 0) {
+                    throw new IOException("Malformed hash: " + entry.hash);
+                }
+                found = HashAlgorithm.forLength(entry.hash.length() / 2);
+                break;
+            }
+        }
+        algorithm = found == null ? HashAlgorithm.MD5 : found;
+    }
+
+    @Override
+    public WalkEntry next() throws IOException {
+        Entry entry = pending.isEmpty() ? read() : pending.remove();
+        if (entry == null) {
+            return null;
+        }
+        byte[] hash = null;
+        if (entry.hash != null) {
+            if (entry.hash.length() != algorithm.length() * 2) {
+                throw new IOException("Malformed hash: " + entry.hash);
+            }
+            hash = new byte[algorithm.length()];
+            for (int i = 0; i < hash.length; i++) {
+                hash[i] = (byte) (digit(entry.hash.charAt(2 * i)) << 4 | digit(entry.hash.charAt(2 * i + 1)));
+            }
+        }
+        return new WalkEntry(entry.path, hash, entry.size, entry.mtime, entry.tree);
+    }
+
+    private Entry read() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+        Parser parser = new Parser(line);
+        Entry entry = new Entry();
+        parser.expect('{');
+        if (!parser.skip('}')) {
+            do {
+                String key = parser.string();
+                parser.expect(':');
+                switch (key) {
+                    case "path":
+                        entry.path = parser.string();
+                        break;
+                    case "hash":
+                        entry.hash = parser.skip("null") ? null : parser.string();
+                        break;
+                    case "size":
+                        entry.size = parser.number();
+                        break;
+                    case "mtime":
+                        entry.mtime = parser.number();
+                        break;
+                    case "tree":
+                        entry.tree = parser.bool();
+                        break;
+                    default:
+                        parser.value();
+                }
+            } while (parser.skip(','));
+            parser.expect('}');
+        }
+        if (entry.path == null) {
+            throw new IOException("Manifest entry without path: " + line);
+        }
+        return entry;
+    }
+
+    /**
+     * Just enough JSON for the flat objects of {@link JsonOutput}.
+     */
+    private static final class Parser {
+        private final String line;
+        private int pos;
+
+        Parser(String line) {
+            this.line = line;
+        }
+
+        private void whitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean skip(char c) {
+            whitespace();
+            if (pos < line.length() && line.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean skip(String word) {
+            whitespace();
+            if (line.startsWith(word, pos)) {
+                pos += word.length();
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) throws IOException {
+            if (!skip(c)) {
+                throw error("'" + c + "' expected");
+            }
+        }
+
+        String string() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= line.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = line.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= line.length()) {
+                    throw error("Unterminated string");
+                }
+                c = line.charAt(pos++);
+                switch (c) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw error("Malformed escape");
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            code = code << 4 | digit(line.charAt(pos++));
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        sb.append(c);
+                }
+            }
+        }
+
+        long number() throws IOException {
+            whitespace();
+            int start = pos;
+            if (pos < line.length() && line.charAt(pos) == '-') {
+                pos++;
+            }
+            while (pos < line.length() && Character.isDigit(line.charAt(pos))) {
+                pos++;
+            }
+            try {
+                return Long.parseLong(line.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Number expected");
+            }
+        }
+
+        boolean bool() throws IOException {
+            if (skip("true")) {
+                return true;
+            }
+            if (skip("false")) {
+                return false;
+            }
+            throw error("Boolean expected");
+        }
+
+        // skips a value of a key this reader does not know
+        void value() throws IOException {
+            whitespace();
+            if (pos < line.length() && line.charAt(pos) == '"') {
+                string();
+            } else if (!skip("null") && !skip("true") && !skip("false")) {
+                number();
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at " + pos + " in manifest line: " + line);
+        }
+    }
+
+    private static int digit(char c) throws IOException {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            throw new IOException("Malformed hash digit: " + c);
+        }
+        return digit;
+    }
+
+    @Override
+    public HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes one JSON object per line:
+ * {@code {"path":"...","hash":"...","size":1,"mtime":1}}.
+ * The hash is {@code null} for files that could not be read,
+ * mtime is in milliseconds since the epoch. Tree hashes are marked
+ * with {@code "tree":true}.
+ */
+class JsonOutput extends ChannelOutput {
+    JsonOutput(FileChannel channel, HashAlgorithm algorithm) {
+        super(channel, algorithm);
+    }
+
+    @Override
+    void write(WalkEntry entry) throws IOException {
+        putAscii("{\"path\":\"");
+        putEscaped(entry.path);
+        if (entry.hash == null) {
+            putAscii("\",\"hash\":null");
+        } else {
+            putAscii("\",\"hash\":\"");
+            putHex(entry.hash);
+            putAscii("\"");
+        }
+        putAscii(",\"size\":");
+        putLong(entry.size);
+        putAscii(",\"mtime\":");
+        putLong(entry.mtime);
+        if (entry.tree) {
+            putAscii(",\"tree\":true");
+        }
+        putAscii("}\n");
+    }
+
+    private void putEscaped(String str) throws IOException {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                putAscii("\\");
+                putCodePoint(c);
+            } else if (c < 0x20) {
+                ensure(6);
+                buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >>> 4]).put(HEX[c & 0xF]);
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                putCodePoint(Character.toCodePoint(c, str.charAt(++i)));
+            } else {
+                putCodePoint(c);
+            }
+        }
+    }
+
+    private void putLong(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
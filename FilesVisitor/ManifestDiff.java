@@ -0,0 +1,58 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Compares two manifests by path. Both are sorted with
+ * {@link ExternalSorter} and merged, so they may be larger than the heap.
+ * Entries only in the new manifest are reported as added, entries only
+ * in the old one as removed, and entries whose hash differ as changed
+ * with the new hash. Repeated paths are compared by their first entry.
+ */
+class ManifestDiff {
+    private final ExternalSorter sorter;
+
+    ManifestDiff(Path temp) {
+        this.sorter = new ExternalSorter(temp, ExternalSorter.RUN_BYTES);
+    }
+
+    void diff(ManifestReader first, ManifestReader second, FileChannel channel) throws IOException {
+        if (first.algorithm() != second.algorithm()) {
+            throw new IllegalArgumentException("Manifests use different hash algorithms: "
+                    + first.algorithm().title() + " and " + second.algorithm().title());
+        }
+        try (ManifestReader older = sorter.sort(first);
+             ManifestReader newer = sorter.sort(second);
+             DiffOutput output = new DiffOutput(channel, first.algorithm())) {
+            WalkEntry a = older.next();
+            WalkEntry b = newer.next();
+            while (a != null || b != null) {
+                int cmp = a == null ? 1 : b == null ? -1 : a.path.compareTo(b.path);
+                if (cmp < 0) {
+                    output.write(DiffOutput.REMOVED, a);
+                    a = next(older, a);
+                } else if (cmp > 0) {
+                    output.write(DiffOutput.ADDED, b);
+                    b = next(newer, b);
+                } else {
+                    if (a.tree != b.tree || !Arrays.equals(a.hash, b.hash)) {
+                        output.write(DiffOutput.CHANGED, b);
+                    }
+                    a = next(older, a);
+                    b = next(newer, b);
+                }
+            }
+        }
+    }
+
+    private static WalkEntry next(ManifestReader reader, WalkEntry previous) throws IOException {
+        WalkEntry entry;
+        do {
+            entry = reader.next();
+        } while (entry != null && entry.path.equals(previous.path));
+        return entry;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming reader of manifests written by the walker.
+ */
+interface ManifestReader extends Closeable {
+    /**
+     * Returns the next entry, or {@code null} at the end of the manifest.
+     */
+    WalkEntry next() throws IOException;
+
+    HashAlgorithm algorithm();
+
+    /**
+     * Opens a text, NDJSON or binary manifest, the format is detected by
+     * the binary header or a leading {@code '{'}.
+     */
+    static ManifestReader open(Path file) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        try {
+            input.mark(Integer.BYTES);
+            DataInputStream data = new DataInputStream(input);
+            int magic;
+            try {
+                magic = data.readInt();
+            } catch (EOFException e) {
+                magic = 0;
+            }
+            if (magic == BinaryOutput.MAGIC) {
+                return new BinaryManifestReader(data);
+            }
+            input.reset();
+            input.mark(1);
+            int first = input.read();
+            input.reset();
+            if (first == '{') {
+                return new JsonManifestReader(input);
+            }
+            return new TextManifestReader(input);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+}
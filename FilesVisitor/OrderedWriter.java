@@ -0,0 +1,101 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes entries in the order their futures were submitted, no matter
+ * in which order the hash jobs complete. The queue is bounded, so
+ * the walker blocks instead of running ahead of the workers.
+ */
+class OrderedWriter implements Closeable {
+    private static final Future<WalkEntry> END = CompletableFuture.completedFuture(null);
+
+    private final BlockingQueue<Future<WalkEntry>> queue;
+    private final ChannelOutput output;
+    private final Thread thread;
+    private volatile IOException failure;
+
+    OrderedWriter(ChannelOutput output, int capacity) {
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::drain, "walk-writer");
+        thread.start();
+    }
+
+    void put(Future<WalkEntry> line) throws IOException {
+        checkFailure();
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Number of entries waiting to be written.
+     */
+    int size() {
+        return queue.size();
+    }
+
+    private void drain() {
+        try {
+            Future<WalkEntry> line;
+            // keep taking until END even after a failure, so put and close never block on a full queue
+            while ((line = queue.take()) != END) {
+                try {
+                    WalkEntry entry = line.get();
+                    if (failure == null) {
+                        output.write(entry);
+                    }
+                } catch (ExecutionException e) {
+                    fail(new IOException("Hash job failed: " + e.getCause(), e.getCause()));
+                } catch (IOException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new IOException(e.toString(), e));
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException(e.getMessage()));
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    // a new exception every time, so put and close never throw the same instance
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Writing output failed: " + e, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            while (thread.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // the writer is still draining a full queue
+            }
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        checkFailure();
+    }
+}
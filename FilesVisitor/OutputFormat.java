@@ -0,0 +1,41 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.nio.channels.FileChannel;
+
+enum OutputFormat {
+    TEXT("text") {
+        @Override
+        ChannelOutput open(FileChannel channel, HashAlgorithm algorithm) {
+            return new TextOutput(channel, algorithm);
+        }
+    },
+    NDJSON("ndjson") {
+        @Override
+        ChannelOutput open(FileChannel channel, HashAlgorithm algorithm) {
+            return new JsonOutput(channel, algorithm);
+        }
+    },
+    BINARY("binary") {
+        @Override
+        ChannelOutput open(FileChannel channel, HashAlgorithm algorithm) {
+            return new BinaryOutput(channel, algorithm);
+        }
+    };
+
+    private final String title;
+
+    OutputFormat(String title) {
+        this.title = title;
+    }
+
+    abstract ChannelOutput open(FileChannel channel, HashAlgorithm algorithm);
+
+    static OutputFormat forName(String name) {
+        for (OutputFormat format : values()) {
+            if (format.title.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format " + name);
+    }
+}
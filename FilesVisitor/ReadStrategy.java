@@ -0,0 +1,74 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Ways to feed file content into a hasher. The strategy is chosen
+ * by the file size reported in {@code BasicFileAttributes}.
+ */
+enum ReadStrategy {
+    /**
+     * Reads through a direct buffer owned by the current thread,
+     * so no heap copy is made and buffers are not reallocated per file.
+     */
+    CHANNEL {
+        @Override
+        void read(FileChannel channel, Hasher hasher) throws IOException {
+            ByteBuffer buffer = BUFFERS.get();
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        }
+    },
+    /**
+     * Maps the file window by window, so large files are hashed
+     * without a read syscall per buffer.
+     */
+    MAPPED {
+        @Override
+        void read(FileChannel channel, Hasher hasher) throws IOException {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(MAP_WINDOW, size - position));
+                hasher.update(mapped);
+            }
+        }
+    };
+
+    static final int BUFFER_SIZE = 1 << 16;
+    static final long MAPPED_THRESHOLD = 1 << 24;
+    static final long MAP_WINDOW = 1 << 28;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    abstract void read(FileChannel channel, Hasher hasher) throws IOException;
+
+    /**
+     * Feeds at most {@code limit} leading bytes of the file into the hasher.
+     */
+    static void readPrefix(FileChannel channel, Hasher hasher, int limit) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        buffer.limit(Math.min(limit, BUFFER_SIZE));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        hasher.update(buffer);
+        buffer.clear();
+    }
+
+    static ReadStrategy forSize(long size) {
+        return size >= MAPPED_THRESHOLD ? MAPPED : CHANNEL;
+    }
+}
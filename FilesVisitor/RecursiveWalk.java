@@ -1,26 +1,111 @@
 package ru.ifmo.ctddev.kustareva.walk;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RecursiveWalk {
+    private static final int JOBS_PER_THREAD = 64;
+
     public static void main(String[] args) {
-        try (BufferedReader reader =
-                     new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), "utf-8"));
-             BufferedWriter writer =
-                     new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), "utf-8"))) {
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args == null ? new String[0] : args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(WalkOptions.USAGE);
+            return;
+        }
+        switch (options.mode) {
+            case DIFF:
+                diff(options);
+                break;
+            case DEDUPE:
+                dedupe(options);
+                break;
+            default:
+                walk(options);
+        }
+    }
+
+    private static void walk(WalkOptions options) {
+        ExecutorService pool = options.threads > 1 ? Executors.newFixedThreadPool(options.threads) : null;
+        Executor executor = pool != null ? pool : Runnable::run;
+        try (WalkStats stats = new WalkStats().register().report(options.stats);
+             BufferedReader reader =
+                     new BufferedReader(new InputStreamReader(new FileInputStream(options.input), "utf-8"));
+             FileChannel channel = FileChannel.open(Paths.get(options.output),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelOutput output = options.format.open(channel, options.algorithm);
+             HashCache cache = options.cache != null ? HashCache.open(Paths.get(options.cache),
+                     options.tree ? "tree-" + options.algorithm.title() : options.algorithm.title()) : null;
+             OrderedWriter ordered = new OrderedWriter(output, options.threads * JOBS_PER_THREAD)) {
+            stats.setQueueDepth(ordered::size);
             String str;
             while ((str = reader.readLine()) != null) {
                 Path path = Paths.get(str);
-                FilesVisitor visitor = new FilesVisitor(writer);
+                FilesVisitor visitor = new FilesVisitor(executor, ordered, cache, options.algorithm, options.tree, stats);
                 Files.walkFileTree(path, visitor);
             }
+            if (cache != null) {
+                cache.commit();
+            }
         } catch (IOException e) {
             System.err.println("In main IOException: " + e.getMessage());
         } catch (RuntimeException e) {
             System.err.println("In main RuntimeException: " + e.getMessage());
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static void diff(WalkOptions options) {
+        Path output = Paths.get(options.output);
+        try (ManifestReader first = ManifestReader.open(Paths.get(options.input));
+             ManifestReader second = ManifestReader.open(Paths.get(options.other));
+             FileChannel channel = FileChannel.open(output,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Path temp = output.toAbsolutePath().getParent();
+            new ManifestDiff(temp).diff(first, second, channel);
+        } catch (IOException e) {
+            System.err.println("In diff IOException: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("In diff RuntimeException: " + e.getMessage());
+        }
+    }
+
+    private static void dedupe(WalkOptions options) {
+        ExecutorService pool = options.threads > 1 ? Executors.newFixedThreadPool(options.threads) : null;
+        Executor executor = pool != null ? pool : Runnable::run;
+        Deduplicator deduplicator = new Deduplicator(executor, options.algorithm);
+        try (BufferedReader reader =
+                     new BufferedReader(new InputStreamReader(new FileInputStream(options.input), "utf-8"));
+             FileChannel channel = FileChannel.open(Paths.get(options.output),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             TextOutput output = new TextOutput(channel, options.algorithm)) {
+            String str;
+            while ((str = reader.readLine()) != null) {
+                Files.walkFileTree(Paths.get(str), deduplicator.visitor());
+            }
+            deduplicator.report(output);
+        } catch (IOException e) {
+            System.err.println("In dedupe IOException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.err.println("In dedupe InterruptedException: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("In dedupe RuntimeException: " + e.getMessage());
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads {@code HASH path} lines. The algorithm is inferred from the
+ * hash length of the first line, an all-zero hash marks a failed file.
+ * Size and mtime are not recorded in this format.
+ * Tree hashes carry the {@link TextOutput#TREE_MARKER} prefix.
+ */
+class TextManifestReader implements ManifestReader {
+    private final BufferedReader reader;
+    private final HashAlgorithm algorithm;
+    private String line;
+
+    TextManifestReader(InputStream input) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        line = reader.readLine();
+        algorithm = line == null ? HashAlgorithm.MD5 : HashAlgorithm.forLength((separator(line) - start(line)) / 2);
+    }
+
+    @Override
+    public WalkEntry next() throws IOException {
+        if (line == null) {
+            return null;
+        }
+        int start = start(line);
+        int separator = separator(line);
+        if (separator - start != algorithm.length() * 2) {
+            throw new IOException("Malformed manifest line: " + line);
+        }
+        byte[] hash = new byte[algorithm.length()];
+        boolean failed = true;
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = (byte) (digit(line.charAt(start + 2 * i)) << 4 | digit(line.charAt(start + 2 * i + 1)));
+            failed &= hash[i] == 0;
+        }
+        WalkEntry entry = new WalkEntry(line.substring(separator + 1), failed ? null : hash, -1, -1, start > 0);
+        line = reader.readLine();
+        return entry;
+    }
+
+    private static int start(String line) {
+        return line.startsWith(TextOutput.TREE_MARKER) ? TextOutput.TREE_MARKER.length() : 0;
+    }
+
+    private static int separator(String line) throws IOException {
+        int separator = line.indexOf(' ');
+        if (separator < 0) {
+            throw new IOException("Malformed manifest line: " + line);
+        }
+        return separator;
+    }
+
+    private static int digit(char c) throws IOException {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            throw new IOException("Malformed hash digit: " + c);
+        }
+        return digit;
+    }
+
+    @Override
+    public HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
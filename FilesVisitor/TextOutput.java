@@ -0,0 +1,31 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes {@code HASH path} lines, tree hashes are written as {@code T:HASH}.
+ */
+class TextOutput extends ChannelOutput {
+    static final String TREE_MARKER = "T:";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    TextOutput(FileChannel channel, HashAlgorithm algorithm) {
+        super(channel, algorithm);
+    }
+
+    @Override
+    void write(WalkEntry entry) throws IOException {
+        if (entry.tree) {
+            putAscii(TREE_MARKER);
+        }
+        putHex(entry.hash);
+        putAscii(" ");
+        putUtf8(entry.path);
+        putAscii(LINE_SEPARATOR);
+    }
+
+    void blankLine() throws IOException {
+        putAscii(LINE_SEPARATOR);
+    }
+}
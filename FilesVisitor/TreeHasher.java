@@ -0,0 +1,110 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Merkle tree hash of a file. The file is split into {@link #CHUNK} byte
+ * chunks which are hashed in parallel on the common fork/join pool.
+ * A leaf is {@code H(0x00 || chunk)}, an inner node is
+ * {@code H(0x01 || left || right)}, and the left subtree always covers
+ * the largest power of two of chunks that is less than their total
+ * number. The result differs from the plain hash even for a single
+ * chunk, so tree hashes are marked in the output.
+ */
+class TreeHasher {
+    static final int CHUNK = 1 << 22;
+    /**
+     * Files smaller than this are hashed sequentially even in tree mode.
+     */
+    static final long THRESHOLD = 16L * CHUNK;
+
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+
+    private TreeHasher() {}
+
+    /**
+     * Returns the tree hash of the file, or {@code null} if it could not be read.
+     */
+    static byte[] hash(Path file, HashAlgorithm algorithm) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long chunks = Math.max(1, (channel.size() + CHUNK - 1) / CHUNK);
+            return ForkJoinPool.commonPool().invoke(new Node(channel, algorithm, 0, chunks));
+        } catch (IOException e) {
+            System.err.println("In visitFile IOException: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.err.println("In visitFile IOException: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("In visitFile RuntimeException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static class Node extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final HashAlgorithm algorithm;
+        private final long from;
+        private final long to;
+
+        Node(FileChannel channel, HashAlgorithm algorithm, long from, long to) {
+            this.channel = channel;
+            this.algorithm = algorithm;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (to - from == 1) {
+                return leaf();
+            }
+            long split = from + Long.highestOneBit(to - from - 1);
+            Node left = new Node(channel, algorithm, from, split);
+            left.fork();
+            byte[] right = new Node(channel, algorithm, split, to).compute();
+            byte[] leftHash = left.join();
+
+            Hasher hasher = algorithm.hasher();
+            ByteBuffer node = ByteBuffer.allocate(1 + leftHash.length + right.length);
+            node.put(NODE).put(leftHash).put(right).flip();
+            hasher.update(node);
+            return hasher.digest();
+        }
+
+        private byte[] leaf() {
+            Hasher hasher = algorithm.hasher();
+            ByteBuffer buffer = ByteBuffer.allocate(ReadStrategy.BUFFER_SIZE);
+            buffer.put(LEAF).flip();
+            hasher.update(buffer);
+            try {
+                long position = from * CHUNK;
+                long end = position + CHUNK;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                    buffer.flip();
+                    hasher.update(buffer);
+                }
+                return hasher.digest();
+            } catch (IOException e) {
+                // drops partial state of the cached hasher
+                hasher.digest();
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Heap allocated per manifest line by the output stage: {@link TextOutput} against the old
+ * {@code String.format} + {@link StringBuffer} + {@link BufferedWriter} formatting.
+ *
+ * <p>Usage: {@code WalkAllocationBenchmark [lines]}, default is 1M lines. Entries are prepared
+ * up front, so only the encoding and writing of lines is counted. Allocation is read from
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes}, which needs a HotSpot JVM.
+ */
+public class WalkAllocationBenchmark {
+    private static final int ROUNDS = 5;
+
+    private interface Stage {
+        void write(Path file, WalkEntry[] entries) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+        HashAlgorithm algorithm = HashAlgorithm.MD5;
+        Random random = new Random(lines);
+        WalkEntry[] entries = new WalkEntry[lines];
+        for (int i = 0; i < lines; i++) {
+            byte[] hash = new byte[algorithm.length()];
+            random.nextBytes(hash);
+            entries[i] = new WalkEntry("dir" + i % 100 + "/file" + i + ".txt", hash, -1, -1);
+        }
+        Path file = Files.createTempFile("walk", ".txt");
+        try {
+            System.out.printf("%-24s %10s %12s %12s%n", "stage", "lines", "bytes/line", "ns/line");
+            run("String.format", file, entries, (path, es) -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                    for (WalkEntry entry : es) {
+                        StringBuffer line = new StringBuffer();
+                        for (byte b : entry.hash) {
+                            line.append(String.format("%02X", b));
+                        }
+                        writer.write(line.append(' ').append(entry.path).toString());
+                        writer.newLine();
+                    }
+                }
+            });
+            run("TextOutput", file, entries, (path, es) -> {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                     TextOutput output = new TextOutput(channel, algorithm)) {
+                    for (WalkEntry entry : es) {
+                        output.write(entry);
+                    }
+                }
+            });
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void run(String name, Path file, WalkEntry[] entries, Stage stage) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long bytes = Long.MAX_VALUE;
+        long time = Long.MAX_VALUE;
+        // first rounds warm up, the rest keep the best figures
+        for (int round = 0; round < 2 * ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            stage.write(file, entries);
+            long elapsed = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(id) - allocated;
+            if (round >= ROUNDS) {
+                bytes = Math.min(bytes, allocated);
+                time = Math.min(time, elapsed);
+            }
+        }
+        System.out.printf("%-24s %10d %12.1f %12.1f%n",
+                name, entries.length, (double) bytes / entries.length, (double) time / entries.length);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+/**
+ * Result of visiting a single file.
+ */
+final class WalkEntry {
+    final String path;
+    /**
+     * Raw hash bytes, {@code null} if the file could not be read.
+     */
+    final byte[] hash;
+    /**
+     * Size in bytes, {@code -1} if unknown.
+     */
+    final long size;
+    /**
+     * Last modification time in milliseconds since the epoch, {@code -1} if unknown.
+     */
+    final long mtime;
+    /**
+     * Whether the hash is a {@link TreeHasher} tree hash.
+     */
+    final boolean tree;
+
+    WalkEntry(String path, byte[] hash, long size, long mtime) {
+        this(path, hash, size, mtime, false);
+    }
+
+    WalkEntry(String path, byte[] hash, long size, long mtime, boolean tree) {
+        this.path = path;
+        this.hash = hash;
+        this.size = size;
+        this.mtime = mtime;
+        this.tree = tree;
+    }
+}
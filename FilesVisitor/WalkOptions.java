@@ -0,0 +1,103 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class WalkOptions {
+    static final String USAGE = "Usage: RecursiveWalk <input> <output> [--threads N] [--cache FILE]\n"
+            + "       [--algorithm md5|sha-1|sha-256|xxhash64|crc32] [--format text|ndjson|binary]\n"
+            + "       [--tree] [--stats SECONDS]\n"
+            + "   or: RecursiveWalk --diff <old manifest> <new manifest> <output>    manifests in any --format\n"
+            + "   or: RecursiveWalk --dedupe <input> <output> [--threads N] [--algorithm ...]";
+
+    enum Mode {
+        WALK(2),
+        DIFF(3),
+        DEDUPE(2);
+
+        final int files;
+
+        Mode(int files) {
+            this.files = files;
+        }
+    }
+
+    Mode mode = Mode.WALK;
+    String input;
+    /**
+     * Second manifest of the diff mode.
+     */
+    String other;
+    String output;
+    int threads = 1;
+    String cache;
+    HashAlgorithm algorithm = HashAlgorithm.MD5;
+    OutputFormat format = OutputFormat.TEXT;
+    /**
+     * Hash large files with {@link TreeHasher}.
+     */
+    boolean tree;
+    /**
+     * Period of the stats line, {@code 0} disables it.
+     */
+    int stats;
+
+    private WalkOptions() {}
+
+    static WalkOptions parse(String[] args) {
+        WalkOptions options = new WalkOptions();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    options.threads = Integer.parseInt(value(args, ++i));
+                    if (options.threads < 1) {
+                        throw new IllegalArgumentException("Number of threads should be positive");
+                    }
+                    break;
+                case "--cache":
+                    options.cache = value(args, ++i);
+                    break;
+                case "--algorithm":
+                    options.algorithm = HashAlgorithm.forName(value(args, ++i));
+                    break;
+                case "--format":
+                    options.format = OutputFormat.forName(value(args, ++i));
+                    break;
+                case "--stats":
+                    options.stats = Integer.parseInt(value(args, ++i));
+                    if (options.stats < 0) {
+                        throw new IllegalArgumentException("Stats period should not be negative");
+                    }
+                    break;
+                case "--tree":
+                    options.tree = true;
+                    break;
+                case "--diff":
+                    options.mode = Mode.DIFF;
+                    break;
+                case "--dedupe":
+                    options.mode = Mode.DEDUPE;
+                    break;
+                default:
+                    files.add(args[i]);
+            }
+        }
+        if (files.size() != options.mode.files) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        options.input = files.get(0);
+        options.output = files.get(files.size() - 1);
+        if (options.mode == Mode.DIFF) {
+            options.other = files.get(1);
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -0,0 +1,241 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of a walk, exposed through JMX and optionally printed
+ * to {@code System.err} periodically.
+ *
+ * <p>Hash latencies are kept in a histogram with power of two buckets.
+ * Hashing time is summed per parent directory and regularly folded into
+ * a list of the {@link #SLOWEST} slowest directories, so memory stays
+ * bounded. A directory whose files are hashed across several folds may
+ * be underestimated.
+ */
+class WalkStats implements WalkStatsMXBean, AutoCloseable {
+    static final int SLOWEST = 10;
+    private static final int MAX_DIRECTORIES = 1 << 16;
+    private static final String NAME = "ru.ifmo.ctddev.kustareva.walk:type=WalkStats";
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder readFailures = new LongAdder();
+    private final LongAdder visitFailures = new LongAdder();
+    private final LongAdder directoryFailures = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(Long.SIZE);
+    private final ConcurrentHashMap<Path, LongAdder> directories = new ConcurrentHashMap<>();
+    private final Map<Path, Long> slowest = new HashMap<>();
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    private ObjectName name;
+    private ScheduledExecutorService reporter;
+
+    void fileHashed(Path file, long size, long nanos) {
+        files.increment();
+        bytes.add(size);
+        latencies.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+        Path directory = file.getParent();
+        if (directory != null) {
+            directories.computeIfAbsent(directory, dir -> new LongAdder()).add(nanos);
+            if (directories.size() > MAX_DIRECTORIES) {
+                fold();
+            }
+        }
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    void readFailed() {
+        readFailures.increment();
+    }
+
+    void visitFailed() {
+        visitFailures.increment();
+    }
+
+    void directoryFailed() {
+        directoryFailures.increment();
+    }
+
+    void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Registers the platform MBean, failures only disable JMX access.
+     */
+    WalkStats register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+                name = objectName;
+            }
+        } catch (JMException e) {
+            System.err.println("In WalkStats JMException: " + e.getMessage());
+        }
+        return this;
+    }
+
+    /**
+     * Starts printing a stats line every {@code seconds}, {@code 0} disables it.
+     */
+    WalkStats report(int seconds) {
+        if (seconds == 0) {
+            return this;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.err.println(line()), seconds, seconds, TimeUnit.SECONDS);
+        return this;
+    }
+
+    String line() {
+        return String.format("files %d (%.0f/s), %.1f MB/s, cache hits %d, failures read %d visit %d directory %d, "
+                        + "queue %d, latency p50 %d us p99 %d us",
+                getFilesHashed(), getFilesPerSecond(), getBytesPerSecond() / (1 << 20), getCacheHits(),
+                getReadFailures(), getVisitFailures(), getDirectoryFailures(),
+                getQueueDepth(), getLatencyP50Micros(), getLatencyP99Micros());
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getReadFailures() {
+        return readFailures.sum();
+    }
+
+    @Override
+    public long getVisitFailures() {
+        return visitFailures.sum();
+    }
+
+    @Override
+    public long getDirectoryFailures() {
+        return directoryFailures.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFilesHashed() / elapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytesRead() / elapsedSeconds();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return percentile(0.99);
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the percentile.
+     */
+    private long percentile(double q) {
+        long total = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            total += latencies.get(i);
+        }
+        long seen = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            seen += latencies.get(i);
+            if (seen > 0 && seen >= q * total) {
+                return (i >= Long.SIZE - 2 ? Long.MAX_VALUE : 2L << i) / 1000;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized List<String> getSlowestDirectories() {
+        List<Map.Entry<Path, Long>> sorted = fold();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<Path, Long> entry : sorted) {
+            result.add(String.format("%s %d ms", entry.getKey(), entry.getValue() / 1_000_000));
+        }
+        return result;
+    }
+
+    private synchronized List<Map.Entry<Path, Long>> fold() {
+        for (Iterator<Map.Entry<Path, LongAdder>> it = directories.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, LongAdder> entry = it.next();
+            it.remove();
+            slowest.merge(entry.getKey(), entry.getValue().sum(), Long::sum);
+        }
+        List<Map.Entry<Path, Long>> sorted = new ArrayList<>(slowest.entrySet());
+        sorted.sort(Map.Entry.<Path, Long>comparingByValue().reversed());
+        sorted = new ArrayList<>(sorted.subList(0, Math.min(SLOWEST, sorted.size())));
+        slowest.clear();
+        for (Map.Entry<Path, Long> entry : sorted) {
+            slowest.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            System.err.println(line());
+            for (String directory : getSlowestDirectories()) {
+                System.err.println("slow directory " + directory);
+            }
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                System.err.println("In WalkStats JMException: " + e.getMessage());
+            }
+        }
+    }
+}
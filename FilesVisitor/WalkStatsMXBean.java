@@ -0,0 +1,53 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link WalkStats}.
+ */
+public interface WalkStatsMXBean {
+    long getFilesHashed();
+
+    long getBytesRead();
+
+    long getCacheHits();
+
+    /**
+     * Files that could not be opened or read while hashing.
+     */
+    long getReadFailures();
+
+    /**
+     * Files the walker could not visit.
+     */
+    long getVisitFailures();
+
+    /**
+     * Directories that could not be listed completely.
+     */
+    long getDirectoryFailures();
+
+    /**
+     * Entries waiting for the output writer, i.e. hash jobs in flight.
+     */
+    int getQueueDepth();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * Approximate median time to hash a file, in microseconds.
+     */
+    long getLatencyP50Micros();
+
+    /**
+     * Approximate 99th percentile of the time to hash a file, in microseconds.
+     */
+    long getLatencyP99Micros();
+
+    /**
+     * Directories with the largest total hashing time, slowest first.
+     */
+    List<String> getSlowestDirectories();
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.ctddev.kustareva.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming xxHash64 with zero seed.
+ */
+class XxHash64Hasher implements Hasher {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer memory = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1, v2, v3, v4;
+    private long total;
+
+    XxHash64Hasher() {
+        reset();
+    }
+
+    private void reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        memory.clear();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        total += buffer.remaining();
+        if (memory.position() > 0) {
+            while (memory.hasRemaining() && buffer.hasRemaining()) {
+                memory.put(buffer.get());
+            }
+            if (memory.hasRemaining()) {
+                buffer.order(order);
+                return;
+            }
+            memory.flip();
+            stripe(memory);
+            memory.clear();
+        }
+        while (buffer.remaining() >= STRIPE) {
+            stripe(buffer);
+        }
+        memory.put(buffer);
+        buffer.order(order);
+    }
+
+    private void stripe(ByteBuffer buffer) {
+        v1 = round(v1, buffer.getLong());
+        v2 = round(v2, buffer.getLong());
+        v3 = round(v3, buffer.getLong());
+        v4 = round(v4, buffer.getLong());
+    }
+
+    @Override
+    public byte[] digest() {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+
+        memory.flip();
+        while (memory.remaining() >= Long.BYTES) {
+            h ^= round(0, memory.getLong());
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (memory.remaining() >= Integer.BYTES) {
+            h ^= (memory.getInt() & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+        }
+        while (memory.hasRemaining()) {
+            h ^= (memory.get() & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+
+        reset();
+        return ByteBuffer.allocate(Long.BYTES).putLong(h).array();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.ifmo.ctddev.kustareva.concurrent;
+
+import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ *  This class calculates results of functions which
+ *  spend most of their time blocked, for example on I/O.
+ *
+ *  <p>Unlike {@link ParallelMapperImpl}, which keeps a few
+ *  threads busy with ranges of elements, every element is a
+ *  task of its own and up to <code>concurrency</code> elements
+ *  are processed at the same time. Threads are started on
+ *  demand with a small stack and stop after a minute without
+ *  work, so thousands of them are cheap to keep.
+ */
+public class BlockingParallelMapper implements ParallelMapper {
+    private static final long STACK_SIZE = 256 * 1024;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor of this class.
+     * @param concurrency
+     *        Maximal count of elements processed at the same time.
+     */
+    public BlockingParallelMapper(int concurrency) {
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(null, runnable, "BlockingParallelMapper worker", STACK_SIZE);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The method provides opportunity to calculate
+     * result with several threads.
+     * @param function Function to operate
+     * @param list List for processing
+     * @param <T> Type of elements in given list.
+     * @param <R> Type of result element.
+     * @return Result of given function.
+     * @throws InterruptedException If activity was interrupted.
+     */
+    @Override
+    public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> list) throws InterruptedException {
+        Object[] results = new Object[list.size()];
+        CountDownLatch done = new CountDownLatch(list.size());
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < list.size(); i++) {
+            final int index = i;
+            executor.execute(() -> {
+                try {
+                    if (error.get() == null) {
+                        results[index] = function.apply(list.get(index));
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        if (error.get() != null) {
+            rethrow(error.get());
+        }
+        @SuppressWarnings("unchecked")
+        List<R> res = (List<R>) Arrays.asList(results);
+        return res;
+    }
+
+    /**
+     * Auto close.
+     * @throws InterruptedException If activity was interrupted.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        // let element tasks already queued by running map calls finish
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The method rethrows a failure of a task in the calling thread.
+     * @param e
+     *        Failure to rethrow.
+     */
+    private static void rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+}
@@ -3,16 +3,41 @@ package ru.ifmo.ctddev.kustareva.concurrent;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 /**
  *  This class calculates results of various
  *  functions using several threads.
+ *
+ *  <p>Every worker has its own deque of tasks. Tasks submitted
+ *  from outside are spread over the deques round-robin, a worker
+ *  takes tasks from the head of its own deque and, when it is
+ *  empty, steals from the tail of the deques of other workers
+ *  starting from a random one. Workers without work park and
+ *  a submission wakes a single parked worker.
  */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final Thread[] threadsArr;
-    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final Worker[] workers;
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger next = new AtomicInteger();
+    // stop signal for workers, functions may clear their interrupt flag
+    private volatile boolean closed;
+    // batches whose futures are not completed yet, cancelled on close
+    private final Set<Batch<?, ?>> batches = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructor of this class.
@@ -20,38 +45,92 @@ public class ParallelMapperImpl implements ParallelMapper {
      *        Count of threads.
      */
     public ParallelMapperImpl(int threads) {
-        threadsArr = new Thread[threads];
+        workers = new Worker[threads];
         for (int i = 0; i < threads; i++) {
-            threadsArr[i] = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        Runnable data;
-                        while (!Thread.interrupted()) {
-                            synchronized (queue) {
-                                while (queue.isEmpty()) {
-                                    queue.wait();
-                                }
-                                data = queue.poll();
-                            }
-                            if (data != null) {
-                                data.run();
-                            }
-                        }
-                    } catch (InterruptedException ignored) {
-
-                    } finally {
-                        Thread.currentThread().interrupt();
+            workers[i] = new Worker();
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Worker thread with its own deque of tasks.
+     */
+    private class Worker implements Runnable {
+        private final Thread thread;
+        private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+        // true while this worker is in the idle queue
+        private final AtomicBoolean parked = new AtomicBoolean();
+
+        Worker() {
+            this.thread = new Thread(this);
+        }
+
+        @Override
+        public void run() {
+            while (!closed && !Thread.interrupted()) {
+                Runnable task = find();
+                if (task == null) {
+                    if (parked.compareAndSet(false, true)) {
+                        idle.add(this);
                     }
+                    // a task pushed before we became idle must be seen by this scan
+                    task = find();
+                    if (task == null) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Throwable ignored) {
+                    // tasks report their own failures through their futures, this only keeps the worker alive
                 }
-            });
-            threadsArr[i].start();
+            }
+        }
+
+        private Runnable find() {
+            Runnable task = tasks.pollFirst();
+            if (task != null || workers.length == 1) {
+                return task;
+            }
+            int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    task = victim.tasks.pollLast();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The method puts the task to the deque of the next
+     * worker and wakes up one idle worker.
+     * @param task
+     *        Task to run.
+     */
+    private void submit(Runnable task) {
+        workers[Math.floorMod(next.getAndIncrement(), workers.length)].tasks.addFirst(task);
+        Worker sleeper = idle.poll();
+        if (sleeper != null) {
+            sleeper.parked.set(false);
+            LockSupport.unpark(sleeper.thread);
         }
     }
 
     /**
      * The method provides opportunity to calculate
      * result with several threads.
+     *
+     * <p>The list is cut into a few ranges per worker, a range
+     * task halves itself while there are idle workers to take
+     * the other half. Results are written to a plain array.
      * @param function Function to operate
      * @param list List for processing
      * @param <T> Type of elements in given list.
@@ -61,31 +140,177 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> function, List<? extends T> list) throws InterruptedException {
-        List<R> res = new ArrayList<>(Collections.nCopies(list.size(), null));
-        AtomicInteger check = new AtomicInteger(0);
-        for (int i = 0; i < list.size(); i++) {
-            final int index = i;
-            synchronized (queue) {
-                queue.push(() -> {
-                    T element = list.get(index);
-                    R result = function.apply(element);
-                    synchronized (queue) {
-                        res.set(index, result);
-                        check.incrementAndGet();
-                        if (check.get() == res.size()) {
-                            queue.notifyAll();
-                        }
+        try {
+            return this.<T, R>mapAsync(function, list).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * The method starts calculation of the function for
+     * every element of the list and returns at once.
+     * @param function
+     *        Function to operate.
+     * @param list
+     *        List for processing.
+     * @param <T>
+     *        Type of elements in given list.
+     * @param <R>
+     *        Type of result element.
+     * @return
+     *        Future of the results in list order, completed
+     *        exceptionally with the first exception thrown
+     *        by the function, or with a
+     *        {@link CancellationException} if the mapper is
+     *        closed first.
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(Function<? super T, ? extends R> function, List<? extends T> list) {
+        return start(new Batch<>(function, list, null, false));
+    }
+
+    /**
+     * The method starts calculation of the function for
+     * every element of the list and passes every result
+     * to the consumer as soon as it is ready.
+     * @param function
+     *        Function to operate.
+     * @param list
+     *        List for processing.
+     * @param consumer
+     *        Receiver of element indices and results. It is
+     *        called from worker threads, concurrently unless
+     *        the delivery is ordered.
+     * @param ordered
+     *        If <code>true</code>, results are delivered one
+     *        at a time in list order, otherwise in order of
+     *        completion.
+     * @param <T>
+     *        Type of elements in given list.
+     * @param <R>
+     *        Type of result element.
+     * @return
+     *        Future completed after the last delivery,
+     *        or exceptionally with the first exception thrown
+     *        by the function or the consumer, or with a
+     *        {@link CancellationException} if the mapper is
+     *        closed first.
+     */
+    public <T, R> CompletableFuture<Void> mapStreaming(Function<? super T, ? extends R> function, List<? extends T> list,
+                                                       BiConsumer<Integer, ? super R> consumer, boolean ordered) {
+        return start(new Batch<>(function, list, consumer, ordered)).thenApply(results -> null);
+    }
+
+    private <T, R> CompletableFuture<List<R>> start(Batch<T, R> batch) {
+        if (!batch.future.isDone()) {
+            batches.add(batch);
+            // close() may have cancelled the batches before this one was added
+            if (closed) {
+                batch.cancel();
+                return batch.future;
+            }
+        }
+        int size = batch.list.size();
+        int chunks = Math.min(size, workers.length * CHUNKS_PER_WORKER);
+        for (int i = 0; i < chunks; i++) {
+            batch.submitRange((int) ((long) size * i / chunks), (int) ((long) size * (i + 1) / chunks));
+        }
+        return batch.future;
+    }
+
+    /**
+     * State of one {@link #mapAsync} or {@link #mapStreaming} call.
+     * @param <T>
+     *        Type of elements in given list.
+     * @param <R>
+     *        Type of result element.
+     */
+    private class Batch<T, R> {
+        private final Function<? super T, ? extends R> function;
+        private final List<? extends T> list;
+        private final Object[] results;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final BiConsumer<Integer, ? super R> consumer;
+        // for ordered delivery: which results are written and how many are delivered, guarded by this
+        private final boolean[] ready;
+        private int delivered;
+
+        Batch(Function<? super T, ? extends R> function, List<? extends T> list,
+              BiConsumer<Integer, ? super R> consumer, boolean ordered) {
+            this.function = function;
+            this.list = list;
+            this.results = new Object[list.size()];
+            this.remaining = new AtomicInteger(list.size());
+            this.consumer = consumer;
+            this.ready = consumer != null && ordered ? new boolean[list.size()] : null;
+            if (list.isEmpty()) {
+                complete();
+            }
+        }
+
+        void submitRange(int from, int to) {
+            submit(() -> run(from, to));
+        }
+
+        private void run(int from, int to) {
+            while (to - from > 1 && !idle.isEmpty()) {
+                int mid = (from + to) >>> 1;
+                submitRange(mid, to);
+                to = mid;
+            }
+            try {
+                for (int i = from; i < to && error.get() == null; i++) {
+                    R result = function.apply(list.get(i));
+                    results[i] = result;
+                    if (ready != null) {
+                        ready[i] = true;
+                        deliverReady();
+                    } else if (consumer != null) {
+                        consumer.accept(i, result);
                     }
-                });
-                queue.notifyAll();
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            } finally {
+                // the decrement publishes the results written above to the completing thread
+                if (remaining.addAndGet(from - to) == 0) {
+                    complete();
+                }
             }
         }
-        synchronized (queue) {
-            if (check.get() < res.size()) {
-                queue.wait();
+
+        // every writer of ready[i] comes here afterwards, so the last one to enter sees all of them
+        @SuppressWarnings("unchecked")
+        private synchronized void deliverReady() {
+            while (delivered < ready.length && ready[delivered] && error.get() == null) {
+                consumer.accept(delivered, (R) results[delivered]);
+                delivered++;
+            }
+        }
+
+        void cancel() {
+            batches.remove(this);
+            future.completeExceptionally(new CancellationException("ParallelMapperImpl is closed"));
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete() {
+            batches.remove(this);
+            if (error.get() != null) {
+                future.completeExceptionally(error.get());
+            } else {
+                future.complete((List<R>) Arrays.asList(results));
             }
         }
-        return res;
     }
 
     /**
@@ -94,9 +319,17 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
      public void close() throws InterruptedException {
-        for (Thread thread : threadsArr) {
-            thread.interrupt();
-            thread.join();
+        closed = true;
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            worker.thread.join();
+        }
+        // no worker runs any more, so nothing else completes these
+        for (Batch<?, ?> batch : batches) {
+            batch.cancel();
         }
     }
 }